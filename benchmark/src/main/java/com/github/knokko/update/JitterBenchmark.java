@@ -0,0 +1,63 @@
+package com.github.knokko.update;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how accurately an <i>UpdateLoop</i> achieves common periods with each wait strategy. The score is the
+ * average time per tick, which should be (very) close to the period. Since JMH can't aggregate percentiles, the 50th
+ * and 99th percentile and the maximum lateness of the ticks (time between the scheduled start and the actual start of
+ * a tick) are printed after each measurement iteration instead, in microseconds.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 1, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class JitterBenchmark {
+
+    private static final int NUM_TICKS = 50;
+
+    @Param({ "1000000", "16666667" })
+    public long period;
+
+    @Param({ "PARK", "SLEEP_THEN_SPIN", "CALIBRATED" })
+    public String waitStrategy;
+
+    private TickHistograms histograms;
+    private WaitStrategy strategy;
+
+    @Setup(Level.Iteration)
+    public void prepare() {
+        histograms = new TickHistograms();
+        if (waitStrategy.equals("PARK")) strategy = WaitStrategy.PARK;
+        else if (waitStrategy.equals("SLEEP_THEN_SPIN")) strategy = WaitStrategy.sleepThenSpin(2_000_000L);
+        else if (waitStrategy.equals("CALIBRATED")) strategy = new CalibratedWaitStrategy();
+        else throw new IllegalArgumentException("Unknown wait strategy " + waitStrategy);
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportLateness() {
+        LatencyHistogram.Snapshot snapshot = histograms.getLateness().snapshot();
+        System.out.printf(
+                "%nLateness of %d ticks: p50 = %d us, p99 = %d us, max = %d us%n", snapshot.getCount(),
+                snapshot.getValueAtPercentile(50.0) / 1000L, snapshot.getValueAtPercentile(99.0) / 1000L,
+                snapshot.getMax() / 1000L
+        );
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_TICKS)
+    public void runTicks() {
+        int[] tickCounter = { 0 };
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            tickCounter[0] += 1;
+            if (tickCounter[0] == NUM_TICKS) loop.stop();
+        }, period);
+        updateLoop.setWaitStrategy(strategy);
+        updateLoop.addTickListener(histograms);
+        updateLoop.run();
+    }
+}
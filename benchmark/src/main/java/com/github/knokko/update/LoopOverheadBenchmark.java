@@ -0,0 +1,61 @@
+package com.github.knokko.update;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of <i>UpdateLoop</i> per tick, by running an update loop with an empty update function and a
+ * tiny period on the benchmark thread. Since the update function is empty, the measured time per operation is the
+ * scheduling overhead of a single tick. It also measures the cost of <b>setPeriod</b>, both when it changes the period,
+ * and when the period is unchanged.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LoopOverheadBenchmark {
+
+    private static final int NUM_TICKS = 100_000;
+
+    @Param({ "0", "100" })
+    public long period;
+
+    @Param({ "false", "true" })
+    public boolean withTickMetrics;
+
+    private int tickCounter;
+    private long periodOffset;
+    private UpdateLoop idleLoop;
+
+    @Setup
+    public void createIdleLoop() {
+        idleLoop = new UpdateLoop(loop -> {}, 1_000_000L);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_TICKS)
+    public int tick() {
+        tickCounter = 0;
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            tickCounter += 1;
+            if (tickCounter == NUM_TICKS) loop.stop();
+        }, period);
+        if (withTickMetrics) updateLoop.addTickListener(new TickMetrics());
+        updateLoop.run();
+        return tickCounter;
+    }
+
+    @Benchmark
+    public void setPeriod() {
+        periodOffset ^= 1L;
+        idleLoop.setPeriod(period + periodOffset);
+    }
+
+    @Benchmark
+    public void setSamePeriod() {
+        idleLoop.setPeriod(period);
+    }
+}
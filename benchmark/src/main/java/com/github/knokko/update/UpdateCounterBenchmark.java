@@ -0,0 +1,75 @@
+package com.github.knokko.update;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of <b>UpdateCounter.increment()</b> and <b>UpdateCounter.getValue()</b>, both uncontended and
+ * while other threads are reading the value. The <i>SlidingUpdateCounter</i> is measured while multiple threads
+ * increment it at the same time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UpdateCounterBenchmark {
+
+    @State(Scope.Thread)
+    public static class ThreadCounter {
+        final UpdateCounter counter = new UpdateCounter();
+    }
+
+    @State(Scope.Group)
+    public static class SharedCounter {
+        final UpdateCounter counter = new UpdateCounter();
+    }
+
+    @State(Scope.Benchmark)
+    public static class SharedSlidingCounter {
+        final SlidingUpdateCounter counter = new SlidingUpdateCounter();
+    }
+
+    @Benchmark
+    public void increment(ThreadCounter state) {
+        state.counter.increment();
+    }
+
+    @Benchmark
+    public long getValue(ThreadCounter state) {
+        return state.counter.getValue();
+    }
+
+    @Benchmark
+    @Group("incrementWhileReading")
+    @GroupThreads(1)
+    public void incrementWhileReading(SharedCounter state) {
+        state.counter.increment();
+    }
+
+    @Benchmark
+    @Group("incrementWhileReading")
+    @GroupThreads(3)
+    public long readWhileIncrementing(SharedCounter state) {
+        return state.counter.getValue();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void slidingIncrementUncontended(SharedSlidingCounter state) {
+        state.counter.increment();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void slidingIncrementContended(SharedSlidingCounter state) {
+        state.counter.increment();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long slidingGetValue(SharedSlidingCounter state) {
+        return state.counter.getValue();
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.knokko.update;
+
+/**
+ * A {@link TickListener} that stretches the period of an <i>UpdateLoop</i> when its update function consistently
+ * takes longer than its target period, and restores the target period when the load decreases again. Without it, an
+ * overloaded update loop will just accumulate backlog until its maximum backlog is exceeded, which makes the
+ * simulation run in slow motion without any feedback. Usage:
+ * <ul>
+ *     <li>Create an <i>AdaptivePeriodController</i> with the desired (target) period of the update loop</li>
+ *     <li>Add it to the update loop using <b>updateLoop.addTickListener(controller)</b></li>
+ *     <li>Optionally, pass an <i>OverloadListener</i> to reduce the load when the update loop is overloaded</li>
+ * </ul>
+ * The desired period of a tick is its execution time plus 10% headroom, but at least the target period. When the
+ * desired period is more than 10% larger (or smaller) than the current period for {@code sustainedTicks} consecutive
+ * ticks, the controller will change the period based on the average execution time of those ticks (but never beyond
+ * the maximum period), and notify its listener. Occasional spikes will thus be ignored. In batched catch-up mode,
+ * the execution time of a tick is the execution time of its batch, divided by the number of ticks in the batch.<br>
+ * <b>Thread safety</b>: an instance of this class must be added to at most 1 update loop. All getters can be called
+ * from any thread at any time.
+ */
+public class AdaptivePeriodController implements TickListener {
+
+    private static final double SMOOTHING = 0.125;
+    private static final double HEADROOM = 1.1;
+    private static final double HYSTERESIS = 0.1;
+
+    private final long targetPeriod, maximumPeriod;
+    private final int sustainedTicks;
+    private final OverloadListener listener;
+
+    private double averageDuration = -1.0;
+    private int streakDirection, streakLength;
+    private long streakDuration;
+    private volatile long wantedPeriod;
+    private volatile long currentPeriod;
+    private volatile double loadFactor;
+
+    /**
+     * @param targetPeriod The period that the update loop should have when it is not overloaded, in nanoseconds
+     * @param maximumPeriod The maximum period that this controller will give the update loop, in nanoseconds. When
+     *                      this is equal to {@code targetPeriod}, this controller will never change the period, but
+     *                      it will still notify the {@code listener}.
+     * @param sustainedTicks The number of consecutive ticks whose load must deviate before the period is changed
+     * @param listener The listener that should be notified whenever the period is changed, may be null
+     */
+    public AdaptivePeriodController(
+            long targetPeriod, long maximumPeriod, int sustainedTicks, OverloadListener listener
+    ) {
+        if (targetPeriod <= 0 || maximumPeriod < targetPeriod || sustainedTicks <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.targetPeriod = targetPeriod;
+        this.maximumPeriod = maximumPeriod;
+        this.sustainedTicks = sustainedTicks;
+        this.listener = listener;
+        this.wantedPeriod = targetPeriod;
+        this.currentPeriod = targetPeriod;
+    }
+
+    /**
+     * Constructs a controller that can stretch the period to at most 4 times the target period, after the load has
+     * deviated for 10 consecutive ticks.
+     * @param targetPeriod The period that the update loop should have when it is not overloaded, in nanoseconds
+     * @param listener The listener that should be notified whenever the period is changed, may be null
+     */
+    public AdaptivePeriodController(long targetPeriod, OverloadListener listener) {
+        this(targetPeriod, 4 * targetPeriod, 10, listener);
+    }
+
+    @Override
+    public void onTick(UpdateLoop loop, long scheduledTime, long startTime, long endTime, long droppedBacklog) {
+        // In batched catch-up mode, 1 call covers a whole batch, so use the average duration per tick
+        long duration = (endTime - startTime) / loop.getBatchSize();
+        if (averageDuration < 0.0) averageDuration = duration;
+        else averageDuration += SMOOTHING * (duration - averageDuration);
+        loadFactor = averageDuration / targetPeriod;
+
+        long period = wantedPeriod;
+        long desiredPeriod = Math.max(targetPeriod, (long) (HEADROOM * duration));
+        int direction = 0;
+        if (desiredPeriod > (1.0 + HYSTERESIS) * period) direction = 1;
+        if (desiredPeriod < (1.0 - HYSTERESIS) * period) direction = -1;
+
+        // Always return to exactly the target period when the update loop is no longer overloaded
+        if (desiredPeriod == targetPeriod && period != targetPeriod) direction = -1;
+
+        if (direction != 0 && direction == streakDirection) {
+            streakLength += 1;
+            streakDuration += duration;
+        } else {
+            streakDirection = direction;
+            streakLength = direction != 0 ? 1 : 0;
+            streakDuration = duration;
+        }
+
+        if (streakLength >= sustainedTicks) {
+            double streakLoadFactor = streakDuration / (double) (streakLength * targetPeriod);
+            wantedPeriod = Math.max(targetPeriod, (long) (HEADROOM * streakLoadFactor * targetPeriod));
+            streakDirection = 0;
+            streakLength = 0;
+
+            long newPeriod = Math.min(maximumPeriod, wantedPeriod);
+            if (loop.getPeriod() != newPeriod) loop.setPeriod(newPeriod);
+            currentPeriod = newPeriod;
+            if (listener != null) listener.onLoadChange(loop, streakLoadFactor, newPeriod);
+        }
+    }
+
+    /**
+     * @return The (smoothed) execution time of the update function, divided by the target period
+     */
+    public double getLoadFactor() {
+        return loadFactor;
+    }
+
+    /**
+     * @return True if the update loop is currently considered to be overloaded, which means that the controller
+     * wants a larger period than the target period
+     */
+    public boolean isOverloaded() {
+        return wantedPeriod != targetPeriod;
+    }
+
+    /**
+     * @return The period that this controller gave the update loop, in nanoseconds
+     */
+    public long getCurrentPeriod() {
+        return currentPeriod;
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.knokko.update;
+
+/**
+ * An update function for an <i>UpdateLoop</i> in <i>batched catch-up mode</i>. Rather than calling the update
+ * function once for every pending tick, the update loop calls it once with the number of pending ticks. This is
+ * useful when processing {@code n} ticks at once is much cheaper than processing 1 tick {@code n} times.
+ */
+@FunctionalInterface
+public interface BatchUpdateFunction {
+
+    /**
+     * Processes {@code numTicks} ticks at once.
+     * @param loop The update loop that invokes this function, which is convenient for e.g. stopping it
+     * @param numTicks The number of ticks that should be processed, which is at least 1. It will be larger than 1 when
+     *                 the update loop is behind schedule, but it is bounded by the maximum backlog: it is at most
+     *                 {@code 1 + maximumBacklog / period}.
+     */
+    void update(UpdateLoop loop, long numTicks);
+}
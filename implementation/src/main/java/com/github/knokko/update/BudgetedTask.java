@@ -0,0 +1,17 @@
+package com.github.knokko.update;
+
+/**
+ * An incremental job that can be executed by a <i>BudgetedTaskQueue</i>, for instance pathfinding or chunk
+ * compression. The job is split into small steps, so that the queue can stop between any 2 steps when the time
+ * budget of the current period is exhausted.
+ */
+@FunctionalInterface
+public interface BudgetedTask {
+
+    /**
+     * Performs the next step of this task. Each step should be short (preferably well below the period of the update
+     * loop), because the queue can only check its budget between steps.
+     * @return True if this task is finished, false if it has more steps left
+     */
+    boolean step();
+}
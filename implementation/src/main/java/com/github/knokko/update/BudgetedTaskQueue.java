@@ -0,0 +1,109 @@
+package com.github.knokko.update;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A queue of <i>BudgetedTask</i>s that are executed in the slack time of an <i>UpdateLoop</i>: the time between the
+ * end of an update and the start of the next update, which would otherwise be spent waiting. Usage:
+ * <ul>
+ *     <li>Create a <i>BudgetedTaskQueue</i></li>
+ *     <li>Add it to an update loop using <b>updateLoop.addTickListener(queue)</b>, or call <b>queue.run(loop)</b>
+ *     at the end of the update function</li>
+ *     <li>Call <b>queue.submit(task)</b> from any thread to enqueue deferred work</li>
+ * </ul>
+ * After each update, the queue executes steps of its tasks (oldest task first) until the remaining budget of the
+ * update loop is no longer sufficient for another step. To avoid delaying the next update, it keeps a safety margin
+ * and an estimate of the duration of a step, which quickly grows when a step takes longer than expected. When the
+ * update loop is behind schedule, no steps are executed at all.<br>
+ * When a task throws an exception, it is removed from the queue, and the exception is propagated to the update loop.
+ * <br>
+ * <b>Thread safety</b>: an instance of this class must be used by at most 1 update loop. <b>submit</b> and
+ * <b>getNumPendingTasks</b> can be called from any thread at any time.
+ */
+public class BudgetedTaskQueue implements TickListener {
+
+    private final Queue<BudgetedTask> tasks = new ConcurrentLinkedQueue<>();
+    private final long safetyMargin;
+
+    /**
+     * An estimate of the duration of the next step, which is only used by the update thread
+     */
+    private long stepEstimate;
+
+    /**
+     * @param safetyMargin The minimum remaining budget that should be left before the next update, in nanoseconds.
+     *                     This should be a bit larger than the inaccuracy of the wait strategy of the update loop.
+     */
+    public BudgetedTaskQueue(long safetyMargin) {
+        if (safetyMargin < 0) throw new IllegalArgumentException();
+        this.safetyMargin = safetyMargin;
+    }
+
+    /**
+     * Constructs a <i>BudgetedTaskQueue</i> with a safety margin of 2 milliseconds, which is suitable for the default
+     * wait strategy (<b>WaitStrategy.SLEEP</b>).
+     */
+    public BudgetedTaskQueue() {
+        this(2_000_000L);
+    }
+
+    /**
+     * Adds a task to the end of this queue.<br>
+     * <b>Thread safety</b>: this method can be called from any thread at any time.
+     * @param task The task to be executed
+     */
+    public void submit(BudgetedTask task) {
+        if (task == null) throw new IllegalArgumentException();
+        tasks.add(task);
+    }
+
+    /**
+     * <b>Thread safety</b>: this method can be called from any thread at any time.
+     * @return The number of unfinished tasks, including the task that is currently being executed
+     */
+    public int getNumPendingTasks() {
+        return tasks.size();
+    }
+
+    @Override
+    public void onTick(UpdateLoop loop, long scheduledTime, long startTime, long endTime, long droppedBacklog) {
+        run(loop);
+    }
+
+    /**
+     * Executes steps of the pending tasks until the remaining budget of {@code loop} is exhausted, or until all tasks
+     * are finished. This must only be called from the update function or a tick listener of {@code loop}.
+     * @param loop The update loop whose remaining budget should be used
+     * @return The number of steps that were executed
+     */
+    public int run(UpdateLoop loop) {
+        TimeSource clock = loop.getTimeSource();
+        int numSteps = 0;
+        while (true) {
+            BudgetedTask task = tasks.peek();
+            if (task == null) return numSteps;
+            long budget = loop.getRemainingBudget();
+            if (budget <= safetyMargin + stepEstimate) {
+
+                // When only the estimate rejected the step, shrink it, so that 1 unusually slow step can't block all
+                // tasks forever. When the update loop is behind schedule, this says nothing about the step duration.
+                if (budget > safetyMargin) stepEstimate -= stepEstimate / 8;
+                return numSteps;
+            }
+
+            long startTime = clock.nanoTime();
+            boolean isFinished = true;
+            try {
+                isFinished = task.step();
+            } finally {
+                if (isFinished) tasks.poll();
+            }
+            long duration = clock.nanoTime() - startTime;
+
+            // Grow the estimate immediately when a step is slower than expected, but shrink it slowly
+            stepEstimate = Math.max(duration, stepEstimate - stepEstimate / 8);
+            numSteps += 1;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.knokko.update;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hybrid {@link WaitStrategy} that parks the thread for most of the time, and spins during the last part. Unlike
+ * <b>WaitStrategy.sleepThenSpin</b>, the spin time is not fixed: it keeps track of how much the OS oversleeps when
+ * the thread is parked, and only spins for that duration. On systems with a precise scheduler, this should cost
+ * very little CPU time, while still waking up with (close to) microsecond precision.<br>
+ * Since each instance learns from its own measurements, every <i>UpdateLoop</i> should get its own instance.<br>
+ * <b>Thread safety</b>: this class must only be used by 1 thread at a time.
+ */
+public class CalibratedWaitStrategy implements WaitStrategy {
+
+    private final long minimumMargin, maximumMargin;
+    private long margin;
+
+    /**
+     * @param minimumMargin The minimum spin time, in nanoseconds
+     * @param maximumMargin The maximum spin time, in nanoseconds. If the OS oversleeps more than this, the
+     *                      wait strategy will just accept that it wakes up too late.
+     */
+    public CalibratedWaitStrategy(long minimumMargin, long maximumMargin) {
+        if (minimumMargin < 0 || maximumMargin < minimumMargin) throw new IllegalArgumentException();
+        this.minimumMargin = minimumMargin;
+        this.maximumMargin = maximumMargin;
+        this.margin = Math.min(maximumMargin, Math.max(minimumMargin, 200_000L));
+    }
+
+    /**
+     * Constructs a calibrated wait strategy with a minimum spin time of 10 microseconds and a maximum spin time of
+     * 3 milliseconds.
+     */
+    public CalibratedWaitStrategy() {
+        this(10_000L, 3_000_000L);
+    }
+
+    @Override
+    public void waitFor(long nanoTime) throws InterruptedException {
+        long startTime = System.nanoTime();
+        long deadline = startTime + nanoTime;
+
+        long parkTime = nanoTime - margin;
+        if (parkTime > 0L) {
+            LockSupport.parkNanos(parkTime);
+            if (Thread.interrupted()) throw new InterruptedException();
+
+            // Return when the update loop was woken up, rather than spinning until the deadline
+            long overSleep = System.nanoTime() - startTime - parkTime;
+            if (overSleep < 0L) return;
+
+            if (overSleep > margin) margin = Math.min(overSleep, maximumMargin);
+            else margin = Math.max(minimumMargin, margin - (margin - overSleep) / 16);
+        }
+
+        SpinWait.spinUntil(deadline);
+    }
+
+    /**
+     * @return The current spin time (the amount of time before the deadline at which it will stop parking and
+     * start spinning), in nanoseconds
+     */
+    public long getMargin() {
+        return margin;
+    }
+}
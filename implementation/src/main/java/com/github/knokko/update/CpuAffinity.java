@@ -0,0 +1,64 @@
+package com.github.knokko.update;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * A mechanism to pin the current thread to a set of CPU cores. This is used by <i>LoopThreadFactory</i>, and is
+ * pluggable because Java doesn't have a portable API for thread affinity. Pinning a latency-critical update loop to
+ * an isolated core (e.g. using the {@code isolcpus} kernel parameter on Linux) can reduce its jitter significantly.
+ */
+@FunctionalInterface
+public interface CpuAffinity {
+
+    /**
+     * Pins the current thread using the {@code taskset} command, which is available on most Linux distributions.
+     * It finds the native thread ID via {@code /proc/thread-self}, so it needs Linux 3.17 or later, but it doesn't
+     * need any native code.
+     */
+    CpuAffinity TASKSET = cpus -> {
+        Path threadPath = Files.readSymbolicLink(Paths.get("/proc/thread-self"));
+        String threadID = threadPath.getFileName().toString();
+
+        StringBuilder cpuList = new StringBuilder();
+        for (int cpu : cpus) {
+            if (cpuList.length() > 0) cpuList.append(',');
+            cpuList.append(cpu);
+        }
+
+        Process process = new ProcessBuilder(
+                "taskset", "-p", "-c", cpuList.toString(), threadID
+        ).redirectErrorStream(true).start();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream input = process.getInputStream()) {
+            byte[] buffer = new byte[256];
+            int numBytes;
+            while ((numBytes = input.read(buffer)) != -1) output.write(buffer, 0, numBytes);
+        }
+        int exitCode;
+        try {
+            exitCode = process.waitFor();
+        } catch (InterruptedException interrupted) {
+            process.destroy();
+            throw interrupted;
+        }
+        if (exitCode != 0) {
+            throw new IOException("taskset failed with exit code " + exitCode + ": " +
+                    new String(output.toByteArray(), StandardCharsets.UTF_8).trim());
+        }
+    };
+
+    /**
+     * Pins the current thread to the given CPU cores.
+     * @param cpus The indices of the CPU cores on which the current thread may run. This is never empty.
+     * @throws Exception If the thread could not be pinned. Implementations that wait for something should throw an
+     * <i>InterruptedException</i> when the current thread is interrupted.
+     */
+    void pinCurrentThread(int[] cpus) throws Exception;
+}
@@ -0,0 +1,196 @@
+package com.github.knokko.update;
+
+import java.util.Arrays;
+
+/**
+ * A utility class for measuring frame times (or update times): the time between consecutive calls to
+ * <b>increment()</b>. Unlike <i>UpdateCounter</i>, which only counts the number of frames per period, this class can
+ * tell the difference between evenly spaced frames and frames with an occasional hitch. Usage:
+ * <ul>
+ *     <li>Create an instance of <i>FrameTimeCounter</i></li>
+ *     <li>Call its <b>increment()</b> method at the start of every frame</li>
+ *     <li>Call its <b>snapshot()</b> method to get statistics like the 1% low FPS and the maximum frame time</li>
+ * </ul>
+ * The frame times of the last {@code capacity} frames are stored in a fixed-size ring buffer, so <b>increment()</b>
+ * doesn't allocate any memory. Taking a snapshot doesn't need any locks, and it never blocks <b>increment()</b>.
+ * <br>
+ * <b>Thread safety</b>: <b>increment()</b> must always be called on the same thread. <b>snapshot()</b> can be called
+ * from any thread at any time.
+ */
+public class FrameTimeCounter {
+
+    private final SingleWriterRing frameTimes;
+    private final TimeSource timeSource;
+
+    /**
+     * Only used by the thread that calls <b>increment()</b>
+     */
+    private long lastTime;
+    private boolean hasStarted;
+
+    /**
+     * @param capacity The number of frames whose frame time will be remembered
+     * @param timeSource The clock that should be used to measure the time, for instance a <i>VirtualClock</i>
+     */
+    public FrameTimeCounter(int capacity, TimeSource timeSource) {
+        if (timeSource == null) throw new IllegalArgumentException();
+        this.frameTimes = new SingleWriterRing(capacity, 1);
+        this.timeSource = timeSource;
+    }
+
+    /**
+     * @param capacity The number of frames whose frame time will be remembered
+     */
+    public FrameTimeCounter(int capacity) {
+        this(capacity, TimeSource.SYSTEM);
+    }
+
+    /**
+     * Constructs a counter that remembers the frame times of the last 1000 frames.
+     */
+    public FrameTimeCounter() {
+        this(1000);
+    }
+
+    void increment(long currentTime) {
+        if (hasStarted) {
+            frameTimes.setField(frameTimes.getNextOffset(), currentTime - lastTime);
+            frameTimes.publish();
+        }
+        hasStarted = true;
+        lastTime = currentTime;
+    }
+
+    /**
+     * Records the time since the previous call to this method as frame time. This should be done at the start of
+     * every frame (or update).<br>
+     * <b>Thread safety</b>: This method must always be called on the same thread.
+     */
+    public void increment() {
+        increment(timeSource.nanoTime());
+    }
+
+    /**
+     * <b>Thread safety</b>: This method can be called from any thread at any time.
+     * @return The total number of frame times that have been recorded, which is 1 less than the number of calls to
+     * <b>increment()</b>
+     */
+    public long getNumFrames() {
+        return frameTimes.getNumRecords();
+    }
+
+    /**
+     * Computes statistics about the last {@code capacity} frame times.<br>
+     * <b>Thread safety</b>: This method can be called from any thread at any time, even while another thread is
+     * calling <b>increment()</b>.
+     * @return The statistics of the frame times that are currently remembered
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(frameTimes.copy().fields);
+    }
+
+    /**
+     * Statistics about the frame times that were recorded by a <i>FrameTimeCounter</i>. All times are in
+     * nanoseconds.
+     */
+    public static class Snapshot {
+
+        /**
+         * The frame times, sorted from short to long
+         */
+        private final long[] frameTimes;
+        private final double mean, variance;
+
+        Snapshot(long[] frameTimes) {
+            this.frameTimes = frameTimes;
+            Arrays.sort(frameTimes);
+
+            double sum = 0.0;
+            for (long frameTime : frameTimes) sum += frameTime;
+            this.mean = frameTimes.length > 0 ? sum / frameTimes.length : 0.0;
+
+            double squaredDeviations = 0.0;
+            for (long frameTime : frameTimes) squaredDeviations += (frameTime - mean) * (frameTime - mean);
+            this.variance = frameTimes.length > 0 ? squaredDeviations / frameTimes.length : 0.0;
+        }
+
+        /**
+         * @return The number of frame times in this snapshot
+         */
+        public int getCount() {
+            return frameTimes.length;
+        }
+
+        /**
+         * @return The average frame time, or 0 if there are no frame times
+         */
+        public double getMean() {
+            return mean;
+        }
+
+        /**
+         * @return The longest frame time, or 0 if there are no frame times
+         */
+        public long getMax() {
+            return frameTimes.length > 0 ? frameTimes[frameTimes.length - 1] : 0L;
+        }
+
+        /**
+         * @return The variance of the frame times, in nanoseconds squared
+         */
+        public double getVariance() {
+            return variance;
+        }
+
+        /**
+         * @return The standard deviation of the frame times
+         */
+        public double getStandardDeviation() {
+            return Math.sqrt(variance);
+        }
+
+        /**
+         * @param percentile The percentile, between 0 and 100
+         * @return The shortest frame time such that {@code percentile}% of the frame times are at most that long,
+         * or 0 if there are no frame times
+         */
+        public long getPercentile(double percentile) {
+            if (percentile < 0.0 || percentile > 100.0) throw new IllegalArgumentException();
+            if (frameTimes.length == 0) return 0L;
+            int index = (int) Math.ceil(percentile / 100.0 * frameTimes.length) - 1;
+            return frameTimes[Math.max(0, index)];
+        }
+
+        /**
+         * @return The average number of frames per second, which is 1 second divided by the mean frame time, or 0
+         * if there are no frame times
+         */
+        public double getAverageFps() {
+            return mean > 0.0 ? 1e9 / mean : 0.0;
+        }
+
+        /**
+         * Computes the <i>1% low</i> FPS, which is the average FPS during the slowest 1% of the frames (at least 1
+         * frame). This is a common measure of stutter: a single long hitch barely affects the average FPS, but it
+         * strongly affects the 1% low FPS.
+         * @return The 1% low FPS, or 0 if there are no frame times
+         */
+        public double getOnePercentLowFps() {
+            if (frameTimes.length == 0) return 0.0;
+            int numSlowFrames = Math.max(1, frameTimes.length / 100);
+            double sum = 0.0;
+            for (int index = frameTimes.length - numSlowFrames; index < frameTimes.length; index++) {
+                sum += frameTimes[index];
+            }
+            return sum > 0.0 ? 1e9 * numSlowFrames / sum : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "FrameTimes(count=%d, averageFps=%.1f, 1%%LowFps=%.1f, max=%.2fms, stdDev=%.2fms)",
+                    getCount(), getAverageFps(), getOnePercentLowFps(), getMax() / 1e6, getStandardDeviation() / 1e6
+            );
+        }
+    }
+}
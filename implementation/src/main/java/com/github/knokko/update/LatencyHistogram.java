@@ -0,0 +1,178 @@
+package com.github.knokko.update;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of (non-negative) durations with logarithmic buckets, similar to an HdrHistogram. Every power of 2 is
+ * split into a fixed number of sub-buckets, so the relative error of the reported values is bounded, regardless of
+ * their magnitude. The memory usage is fixed, and recording a value doesn't allocate anything. Usage:
+ * <ul>
+ *     <li>Create an instance of <i>LatencyHistogram</i></li>
+ *     <li>Call its <b>record(value)</b> method for every measured value</li>
+ *     <li>Call its <b>snapshot()</b> or <b>snapshotAndReset()</b> method to compute percentiles</li>
+ * </ul>
+ * To record the lateness and duration of the ticks of an <i>UpdateLoop</i>, use a <i>TickHistograms</i>.<br>
+ * <b>Thread safety</b>: all methods can be called from any thread at any time. Every recorded value will be counted
+ * in exactly 1 snapshot that was taken with <b>snapshotAndReset()</b>, even when values are recorded concurrently.
+ * However, the sum and maximum are reset separately from the counts, so a value that is recorded during
+ * <b>snapshotAndReset()</b> may contribute to the mean or maximum of the next snapshot instead.
+ */
+public class LatencyHistogram {
+
+    private final int subBucketBits;
+    private final int subBucketCount;
+    private final AtomicLongArray counts;
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param subBucketBits The base-2 logarithm of the number of sub-buckets per power of 2. The relative error of
+     *                      the reported values is at most 1 / 2^{@code subBucketBits}. It must be between 1 and 16.
+     */
+    public LatencyHistogram(int subBucketBits) {
+        if (subBucketBits < 1 || subBucketBits > 16) throw new IllegalArgumentException();
+        this.subBucketBits = subBucketBits;
+        this.subBucketCount = 1 << subBucketBits;
+        this.counts = new AtomicLongArray((64 - subBucketBits) * subBucketCount);
+    }
+
+    /**
+     * Constructs a histogram with 32 sub-buckets per power of 2, which gives a relative error of at most ~3%, and
+     * uses ~15KB of memory.
+     */
+    public LatencyHistogram() {
+        this(5);
+    }
+
+    int bucketIndex(long value) {
+        if (value < 2L * subBucketCount) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - subBucketBits;
+        return (shift + 1) * subBucketCount + (int) (value >>> shift) - subBucketCount;
+    }
+
+    long lowestValueInBucket(int index) {
+        return index == 0 ? 0L : highestValueInBucket(index - 1) + 1L;
+    }
+
+    long highestValueInBucket(int index) {
+        if (index < 2 * subBucketCount) return index;
+        int shift = index / subBucketCount - 1;
+        long subBucket = index % subBucketCount + subBucketCount;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Records a value in this histogram. Negative values are treated as 0.
+     * @param value The value to record, typically in nanoseconds
+     */
+    public void record(long value) {
+        if (value < 0L) value = 0L;
+        counts.incrementAndGet(bucketIndex(value));
+        sum.addAndGet(value);
+
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) currentMax = max.get();
+    }
+
+    /**
+     * Takes a snapshot of the values that have been recorded so far, without resetting this histogram.
+     */
+    public Snapshot snapshot() {
+        long[] snapshotCounts = new long[counts.length()];
+        for (int index = 0; index < snapshotCounts.length; index++) snapshotCounts[index] = counts.get(index);
+        return new Snapshot(snapshotCounts, sum.get(), max.get());
+    }
+
+    /**
+     * Takes a snapshot of the values that have been recorded so far, and resets this histogram. This is useful for
+     * reporting the percentiles of each reporting interval separately.
+     */
+    public Snapshot snapshotAndReset() {
+        long[] snapshotCounts = new long[counts.length()];
+        for (int index = 0; index < snapshotCounts.length; index++) snapshotCounts[index] = counts.getAndSet(index, 0L);
+        return new Snapshot(snapshotCounts, sum.getAndSet(0L), max.getAndSet(0L));
+    }
+
+    /**
+     * An immutable snapshot of a <i>LatencyHistogram</i>.
+     */
+    public class Snapshot {
+
+        private final long[] counts;
+        private final long totalCount;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long sum, long max) {
+            this.counts = counts;
+            long totalCount = 0L;
+            int highestIndex = -1;
+            for (int index = 0; index < counts.length; index++) {
+                totalCount += counts[index];
+                if (counts[index] != 0L) highestIndex = index;
+            }
+            this.totalCount = totalCount;
+            this.sum = sum;
+
+            // When values are recorded during snapshotAndReset, the maximum may not match the counts. In that case,
+            // use the highest value of the highest non-empty bucket, so that the maximum is never below a percentile.
+            if (highestIndex == -1) max = 0L;
+            else if (max < lowestValueInBucket(highestIndex) || max > highestValueInBucket(highestIndex)) {
+                max = highestValueInBucket(highestIndex);
+            }
+            this.max = max;
+        }
+
+        /**
+         * @return The number of recorded values
+         */
+        public long getCount() {
+            return totalCount;
+        }
+
+        /**
+         * @return The largest recorded value, or 0 if no values were recorded. This is exact, unless values were
+         * recorded during <b>snapshotAndReset()</b>: then it may be the (approximate) value of the highest bucket.
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @return The average of the recorded values, or 0 if no values were recorded. This is exact, unless values
+         * were recorded during <b>snapshotAndReset()</b>.
+         */
+        public double getMean() {
+            return totalCount == 0L ? 0.0 : sum / (double) totalCount;
+        }
+
+        /**
+         * Gets the (approximate) value at the given percentile. For instance, {@code getValueAtPercentile(99.0)}
+         * returns a value such that at least 99% of the recorded values were smaller than or equal to it.
+         * @param percentile The percentile, between 0 and 100
+         * @return The value at the given percentile, or 0 if no values were recorded
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (percentile < 0.0 || percentile > 100.0) throw new IllegalArgumentException();
+            if (totalCount == 0L) return 0L;
+
+            long targetCount = Math.max(1L, (long) Math.ceil(percentile / 100.0 * totalCount));
+            long countSoFar = 0L;
+            for (int index = 0; index < counts.length; index++) {
+                countSoFar += counts[index];
+                if (countSoFar >= targetCount) return Math.min(highestValueInBucket(index), max);
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "LatencyHistogram(count=%d, mean=%.1f, p50=%d, p99=%d, p99.9=%d, max=%d)",
+                    totalCount, getMean(), getValueAtPercentile(50.0), getValueAtPercentile(99.0),
+                    getValueAtPercentile(99.9), max
+            );
+        }
+    }
+}
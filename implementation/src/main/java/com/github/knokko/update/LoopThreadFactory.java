@@ -0,0 +1,101 @@
+package com.github.knokko.update;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A <i>ThreadFactory</i> for latency-critical update loops, which can configure the name, daemon flag, priority, and
+ * CPU affinity of the update thread. Usage:
+ * <pre>
+ * updateLoop.start(new LoopThreadFactory("Simulation")
+ *         .setDaemon(true)
+ *         .setPriority(Thread.MAX_PRIORITY)
+ *         .setAffinity(CpuAffinity.TASKSET, 3));
+ * </pre>
+ * The CPU affinity is applied by the new thread itself, before it starts running the update loop. When that fails
+ * (e.g. because {@code taskset} is not installed), the exception is passed to the uncaught exception handler of the
+ * thread, and the update loop will run without affinity. When the thread is interrupted while its affinity is being
+ * applied, its interrupt status is restored before the update loop starts.<br>
+ * <b>Thread safety</b>: this class should be configured before it is used. After that, <b>newThread</b> can be
+ * called from any thread at any time.
+ */
+public class LoopThreadFactory implements ThreadFactory {
+
+    private final String name;
+    private final AtomicInteger threadCounter = new AtomicInteger(0);
+
+    private boolean daemon;
+    private int priority = Thread.NORM_PRIORITY;
+    private CpuAffinity affinity;
+    private int[] cpus;
+
+    /**
+     * @param name The name of the threads created by this factory. When it contains {@code %d}, that will be
+     *             replaced by the index of the thread, which is useful when this factory creates multiple threads.
+     */
+    public LoopThreadFactory(String name) {
+        if (name == null) throw new IllegalArgumentException();
+        this.name = name;
+    }
+
+    /**
+     * @param daemon True if the threads should be daemon threads, which don't prevent the JVM from exiting. The
+     *               default is false.
+     * @return this
+     */
+    public LoopThreadFactory setDaemon(boolean daemon) {
+        this.daemon = daemon;
+        return this;
+    }
+
+    /**
+     * @param priority The priority of the threads, between <b>Thread.MIN_PRIORITY</b> and
+     *                 <b>Thread.MAX_PRIORITY</b>. The default is <b>Thread.NORM_PRIORITY</b>. Note that most
+     *                 operating systems ignore thread priorities unless the JVM has special permissions.
+     * @return this
+     */
+    public LoopThreadFactory setPriority(int priority) {
+        if (priority < Thread.MIN_PRIORITY || priority > Thread.MAX_PRIORITY) throw new IllegalArgumentException();
+        this.priority = priority;
+        return this;
+    }
+
+    /**
+     * @param affinity The mechanism that should be used to pin the threads, for instance <b>CpuAffinity.TASKSET</b>
+     * @param cpus The indices of the CPU cores on which the threads may run
+     * @return this
+     */
+    public LoopThreadFactory setAffinity(CpuAffinity affinity, int... cpus) {
+        if (affinity == null || cpus.length == 0) throw new IllegalArgumentException();
+        for (int cpu : cpus) {
+            if (cpu < 0) throw new IllegalArgumentException("Invalid CPU index " + cpu);
+        }
+        this.affinity = affinity;
+        this.cpus = cpus.clone();
+        return this;
+    }
+
+    @Override
+    public Thread newThread(Runnable task) {
+        int threadIndex = threadCounter.getAndIncrement();
+        String threadName = name.contains("%d") ? name.replace("%d", Integer.toString(threadIndex)) : name;
+
+        CpuAffinity threadAffinity = affinity;
+        int[] threadCpus = cpus;
+        Thread thread = new Thread(() -> {
+            if (threadAffinity != null) {
+                try {
+                    threadAffinity.pinCurrentThread(threadCpus.clone());
+                } catch (Exception failure) {
+                    Thread currentThread = Thread.currentThread();
+                    currentThread.getUncaughtExceptionHandler().uncaughtException(currentThread, failure);
+                    if (failure instanceof InterruptedException) currentThread.interrupt();
+                }
+            }
+            task.run();
+        }, threadName);
+        thread.setDaemon(daemon);
+        thread.setPriority(priority);
+        return thread;
+    }
+}
@@ -0,0 +1,21 @@
+package com.github.knokko.update;
+
+/**
+ * A listener that is notified by an <i>AdaptivePeriodController</i> when the load of its <i>UpdateLoop</i> changes
+ * significantly. This can be used to e.g. reduce the simulation quality while the update loop is overloaded.
+ */
+@FunctionalInterface
+public interface OverloadListener {
+
+    /**
+     * Called on the update thread, directly after the <i>AdaptivePeriodController</i> changed (or wanted to change)
+     * the period of {@code loop}.
+     * @param loop The update loop whose load changed
+     * @param loadFactor The average execution time of the update function during the last couple of ticks, divided
+     *                   by the target period. When this is larger than 1, the update loop can't keep up with its
+     *                   target period.
+     * @param newPeriod The new period of the update loop, in nanoseconds. This is the target period when the update
+     *                  loop is no longer overloaded.
+     */
+    void onLoadChange(UpdateLoop loop, double loadFactor, long newPeriod);
+}
@@ -0,0 +1,18 @@
+package com.github.knokko.update;
+
+/**
+ * An update function that processes a single partition of the state. See <i>PartitionedUpdate</i>.
+ */
+@FunctionalInterface
+public interface PartitionFunction {
+
+    /**
+     * Updates partition {@code partition} of the state. This method will be called concurrently for different
+     * partitions, so it must not touch the state of other partitions.
+     * @param loop The update loop that invokes this function, which is convenient for e.g. stopping it
+     * @param partition The index of the partition to update, between 0 (inclusive) and {@code numPartitions}
+     *                  (exclusive)
+     * @param numPartitions The total number of partitions
+     */
+    void update(UpdateLoop loop, int partition, int numPartitions);
+}
@@ -0,0 +1,141 @@
+package com.github.knokko.update;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * An update function that splits each tick into a number of independent partitions, which are executed in parallel
+ * on a <i>ForkJoinPool</i>. Each tick ends when all partitions have been updated, so the next tick will never overlap
+ * with the current tick. Since this is just an update function, the period and maximum backlog of the update loop
+ * are respected like usual. Usage:
+ * <ul>
+ *     <li>Split your state (e.g. your entities) into {@code numPartitions} independent partitions</li>
+ *     <li>Create a <i>PartitionedUpdate</i> with a <i>PartitionFunction</i> that updates 1 partition</li>
+ *     <li>Use it as update function: {@code new UpdateLoop(partitionedUpdate, period)}</li>
+ * </ul>
+ * It also measures the execution time of each partition, which can be used to detect imbalance between the
+ * partitions. The execution time is measured using the <i>TimeSource</i> of the update loop, so a <i>VirtualClock</i>
+ * only sees the time that the partitions advance it by.<br>
+ * <b>Thread safety</b>: an instance of this class must be used by at most 1 update loop. All getters can be called
+ * from any thread at any time.
+ */
+public class PartitionedUpdate implements Consumer<UpdateLoop> {
+
+    private final ForkJoinPool pool;
+    private final PartitionFunction function;
+    private final PartitionTask[] partitions;
+    private final TickTask tickTask = new TickTask();
+
+    private final AtomicLongArray lastDurations;
+    private final AtomicLongArray totalDurations;
+
+    private UpdateLoop currentLoop;
+
+    /**
+     * @param pool The pool on which the partitions should be executed
+     * @param numPartitions The number of partitions
+     * @param function The function that updates 1 partition
+     */
+    public PartitionedUpdate(ForkJoinPool pool, int numPartitions, PartitionFunction function) {
+        if (pool == null || numPartitions <= 0 || function == null) throw new IllegalArgumentException();
+        this.pool = pool;
+        this.function = function;
+        this.partitions = new PartitionTask[numPartitions];
+        for (int index = 0; index < numPartitions; index++) partitions[index] = new PartitionTask(index);
+        this.lastDurations = new AtomicLongArray(numPartitions);
+        this.totalDurations = new AtomicLongArray(numPartitions);
+    }
+
+    /**
+     * Constructs a <i>PartitionedUpdate</i> that uses the common <i>ForkJoinPool</i>, with 1 partition per thread
+     * of the common pool.
+     * @param function The function that updates 1 partition
+     */
+    public PartitionedUpdate(PartitionFunction function) {
+        this(ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism(), function);
+    }
+
+    @Override
+    public void accept(UpdateLoop loop) {
+        currentLoop = loop;
+        tickTask.reinitialize();
+        for (PartitionTask partition : partitions) partition.reinitialize();
+        pool.invoke(tickTask);
+    }
+
+    /**
+     * @return The number of partitions
+     */
+    public int getNumPartitions() {
+        return partitions.length;
+    }
+
+    /**
+     * @param partition The index of the partition
+     * @return The execution time of the given partition during the last tick, in nanoseconds
+     */
+    public long getLastDuration(int partition) {
+        return lastDurations.get(partition);
+    }
+
+    /**
+     * @param partition The index of the partition
+     * @return The total execution time of the given partition during all ticks, in nanoseconds
+     */
+    public long getTotalDuration(int partition) {
+        return totalDurations.get(partition);
+    }
+
+    /**
+     * Computes the imbalance of the last tick, which is the execution time of the slowest partition divided by the
+     * average execution time of all partitions. When the partitions are perfectly balanced, this is 1. When this is
+     * much larger than 1, most threads are idle while they wait for the slowest partition.
+     * @return The imbalance of the last tick, or 1 if no tick has been completed yet
+     */
+    public double getLastImbalance() {
+        long maxDuration = 0L;
+        long totalDuration = 0L;
+        for (int index = 0; index < lastDurations.length(); index++) {
+            long duration = lastDurations.get(index);
+            maxDuration = Math.max(maxDuration, duration);
+            totalDuration += duration;
+        }
+        if (totalDuration == 0L) return 1.0;
+        return maxDuration * (double) lastDurations.length() / totalDuration;
+    }
+
+    private class TickTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void compute() {
+            ForkJoinTask.invokeAll(partitions);
+        }
+    }
+
+    private class PartitionTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int partition;
+
+        PartitionTask(int partition) {
+            this.partition = partition;
+        }
+
+        @Override
+        protected void compute() {
+            TimeSource timeSource = currentLoop.getTimeSource();
+            long startTime = timeSource.nanoTime();
+            function.update(currentLoop, partition, partitions.length);
+            long duration = timeSource.nanoTime() - startTime;
+
+            lastDurations.lazySet(partition, duration);
+            totalDurations.lazySet(partition, totalDurations.get(partition) + duration);
+        }
+    }
+}
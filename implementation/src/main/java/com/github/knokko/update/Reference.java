@@ -1,7 +0,0 @@
-package com.github.knokko.update;
-
-class Reference {
-
-    long time = System.nanoTime();
-    long counter;
-}
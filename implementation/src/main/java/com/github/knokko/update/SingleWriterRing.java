@@ -0,0 +1,127 @@
+package com.github.knokko.update;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size ring buffer that remembers the last {@code capacity} records, where each record consists of
+ * {@code recordSize} longs. This is used by <i>TickRecorder</i> and <i>FrameTimeCounter</i>. Adding a record doesn't
+ * allocate any memory or acquire any locks, and copying the records never blocks the writer: records that are
+ * overwritten while they are being copied are simply left out of the copy.<br>
+ * <b>Thread safety</b>: records must always be added by the same thread. <b>copy()</b> and <b>getNumRecords()</b> can
+ * be called from any thread at any time.
+ */
+class SingleWriterRing {
+
+    private final int capacity;
+    private final int recordSize;
+    private final int ringSize;
+    private final AtomicLongArray ring;
+    private final AtomicLong recordCounter = new AtomicLong();
+
+    /**
+     * @param capacity The maximum number of records that can be remembered
+     * @param recordSize The number of longs per record
+     */
+    SingleWriterRing(int capacity, int recordSize) {
+        if (capacity <= 0 || recordSize <= 0 || (capacity + 1L) * recordSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException();
+        }
+        this.capacity = capacity;
+        this.recordSize = recordSize;
+
+        // The extra slot is for the record that is currently being written, so that it won't overwrite any of the
+        // last capacity records
+        this.ringSize = capacity + 1;
+        this.ring = new AtomicLongArray(ringSize * recordSize);
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The total number of records that have been added, including the ones that have been overwritten
+     */
+    long getNumRecords() {
+        return recordCounter.get();
+    }
+
+    /**
+     * @return The index of the first field of the next record, which should be passed to <b>setField</b>. This must
+     * only be called by the writer thread.
+     */
+    int getNextOffset() {
+        return (int) (recordCounter.get() % ringSize) * recordSize;
+    }
+
+    /**
+     * Sets a field of the next record. This must only be called by the writer thread, and the record will only be
+     * visible to <b>copy()</b> after <b>publish()</b> is called.
+     * @param index The index of the field: {@code getNextOffset() + field}
+     * @param value The value of the field
+     */
+    void setField(int index, long value) {
+        ring.lazySet(index, value);
+    }
+
+    /**
+     * Publishes the next record, after all its fields have been set. This must only be called by the writer thread.
+     */
+    void publish() {
+        recordCounter.lazySet(recordCounter.get() + 1);
+    }
+
+    /**
+     * Copies the remembered records, from oldest to newest.
+     */
+    Copy copy() {
+        long endRecord = recordCounter.get();
+        long startRecord = Math.max(0L, endRecord - capacity);
+        long[] fields = new long[(int) (endRecord - startRecord) * recordSize];
+        for (long record = startRecord; record < endRecord; record++) {
+            int offset = (int) (record % ringSize) * recordSize;
+            int copyOffset = (int) (record - startRecord) * recordSize;
+            for (int field = 0; field < recordSize; field++) fields[copyOffset + field] = ring.get(offset + field);
+        }
+
+        // The writer may have overwritten some of the oldest records while they were being copied. While the writer
+        // is writing record N, it can overwrite record N - ringSize.
+        long firstValidRecord = Math.min(endRecord, Math.max(startRecord, recordCounter.get() + 1 - ringSize));
+        if (firstValidRecord > startRecord) {
+            long[] validFields = new long[(int) (endRecord - firstValidRecord) * recordSize];
+            System.arraycopy(
+                    fields, (int) (firstValidRecord - startRecord) * recordSize,
+                    validFields, 0, validFields.length
+            );
+            fields = validFields;
+        }
+        return new Copy(firstValidRecord, fields);
+    }
+
+    /**
+     * The result of <b>copy()</b>
+     */
+    class Copy {
+
+        /**
+         * The number of the first (oldest) record in this copy
+         */
+        final long firstRecord;
+
+        /**
+         * The fields of the records in this copy: the first {@code recordSize} longs are the fields of the oldest
+         * record, and so on.
+         */
+        final long[] fields;
+
+        Copy(long firstRecord, long[] fields) {
+            this.firstRecord = firstRecord;
+            this.fields = fields;
+        }
+
+        int getNumRecords() {
+            return fields.length / recordSize;
+        }
+    }
+}
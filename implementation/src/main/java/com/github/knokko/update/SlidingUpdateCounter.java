@@ -0,0 +1,151 @@
+package com.github.knokko.update;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A variant of <i>UpdateCounter</i> that can be incremented by multiple threads at the same time, and that reports
+ * the number of updates during a <i>sliding</i> window rather than during the last full period. The window is split
+ * into a number of buckets, and the reported value is refreshed whenever a bucket is completed. For instance, with a
+ * period of 1 second and 10 buckets, the value is refreshed every 100 milliseconds, and contains the number of
+ * updates during the last 10 completed buckets. Usage:
+ * <ul>
+ *     <li>Create an instance of <i>SlidingUpdateCounter</i></li>
+ *     <li>Call its <b>increment()</b> method for every update, from any thread</li>
+ *     <li>Call its <b>getValue()</b> method to get the number of updates during the last period</li>
+ * </ul>
+ * To avoid contention, the counts are striped over multiple cells, and each thread increments its own cell.<br>
+ * <b>Limits</b>: every cell packs a count and an epoch (a bucket number) into 1 long. The number of count bits grows
+ * with the bucket length: a cell can count 2 updates per nanosecond of the bucket length, but at least 2<sup>24</sup>
+ * and at most 2<sup>40</sup> updates per bucket, which no thread can realistically exceed. The remaining bits are used
+ * for the epoch, which wraps after at least 2<sup>62</sup> nanoseconds (about 146 years) when the bucket length is at
+ * least 8 milliseconds, and after 2<sup>40</sup> buckets for shorter buckets (for instance about 35 years with buckets
+ * of 1 millisecond, or 13 days with buckets of 1 microsecond). The counter may report old updates after it has been
+ * running for longer.
+ */
+public class SlidingUpdateCounter {
+
+    private static final int MIN_COUNT_BITS = 24;
+    private static final int MAX_COUNT_BITS = 40;
+
+    /**
+     * The number of longs between the cells of different stripes, which should prevent false sharing
+     */
+    private static final int PADDING = 8;
+
+    private final long bucketLength;
+    private final int countBits;
+    private final long countMask, epochMask;
+    private final int numBuckets, numSlots, stripeStride, stripeMask;
+    private final long startTime;
+    private final TimeSource timeSource;
+
+    /**
+     * Every cell stores the epoch (the lowest bits of the bucket number) in its highest bits, and the count in its
+     * lowest bits. When an increment finds a cell with an outdated epoch, it resets the count.
+     */
+    private final AtomicLongArray cells;
+
+    SlidingUpdateCounter(long period, int numBuckets, int numStripes, long startTime, TimeSource timeSource) {
+        if (numBuckets <= 0 || period / numBuckets <= 0L || Integer.bitCount(numStripes) != 1 || timeSource == null) {
+            throw new IllegalArgumentException();
+        }
+        this.timeSource = timeSource;
+        this.bucketLength = period / numBuckets;
+
+        // Use just enough count bits to count 2 updates per nanosecond, so that the epoch gets the remaining bits
+        int bucketBits = 64 - Long.numberOfLeadingZeros(bucketLength);
+        this.countBits = Math.max(MIN_COUNT_BITS, Math.min(MAX_COUNT_BITS, bucketBits + 1));
+        this.countMask = (1L << countBits) - 1L;
+        this.epochMask = (1L << (64 - countBits)) - 1L;
+        this.numBuckets = numBuckets;
+        this.numSlots = numBuckets + 1;
+        this.stripeStride = numSlots + PADDING;
+        this.stripeMask = numStripes - 1;
+        this.startTime = startTime;
+        this.cells = new AtomicLongArray(numStripes * stripeStride);
+    }
+
+    /**
+     * @param period The period of the counter, in nanoseconds. The number of updates per period will be counted.
+     * @param numBuckets The number of buckets into which the period is split. The reported value is refreshed every
+     *                   {@code period / numBuckets} nanoseconds.
+     */
+    public SlidingUpdateCounter(long period, int numBuckets) {
+        this(period, numBuckets, TimeSource.SYSTEM);
+    }
+
+    /**
+     * @param period The period of the counter, in nanoseconds. The number of updates per period will be counted.
+     * @param numBuckets The number of buckets into which the period is split. The reported value is refreshed every
+     *                   {@code period / numBuckets} nanoseconds.
+     * @param timeSource The clock that should be used to measure the time, for instance a <i>VirtualClock</i>
+     */
+    public SlidingUpdateCounter(long period, int numBuckets, TimeSource timeSource) {
+        this(period, numBuckets, stripeCount(), timeSource.nanoTime(), timeSource);
+    }
+
+    /**
+     * Constructs a counter with a period of 1 second, split into 10 buckets of 100 milliseconds.
+     */
+    public SlidingUpdateCounter() {
+        this(1_000_000_000L, 10);
+    }
+
+    private static int stripeCount() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        return Math.min(64, Integer.highestOneBit(Math.max(1, processors - 1)) << 1);
+    }
+
+    private int stripeOffset() {
+        long threadID = Thread.currentThread().getId();
+        return ((int) (threadID * 0x9E3779B97F4A7C15L >>> 32) & stripeMask) * stripeStride;
+    }
+
+    void increment(long currentTime) {
+        long bucket = (currentTime - startTime) / bucketLength;
+        int index = stripeOffset() + (int) (bucket % numSlots);
+        long epoch = (bucket & epochMask) << countBits;
+
+        while (true) {
+            long oldValue = cells.get(index);
+            long newValue = (oldValue & ~countMask) == epoch ? oldValue + 1L : epoch | 1L;
+            if (cells.compareAndSet(index, oldValue, newValue)) return;
+        }
+    }
+
+    /**
+     * Increments the counter. This should be done at the start of every update (or request, or frame).<br>
+     * <b>Thread safety</b>: This method can be called from any thread at any time. Multiple threads can safely
+     * call it at the same time.
+     */
+    public void increment() {
+        increment(timeSource.nanoTime());
+    }
+
+    long getValue(long currentTime) {
+        long currentBucket = (currentTime - startTime) / bucketLength;
+        if (currentBucket < numBuckets) return -1L;
+
+        long total = 0L;
+        for (long bucket = currentBucket - numBuckets; bucket < currentBucket; bucket++) {
+            int slot = (int) (bucket % numSlots);
+            long epoch = (bucket & epochMask) << countBits;
+            for (int stripeOffset = 0; stripeOffset < cells.length(); stripeOffset += stripeStride) {
+                long value = cells.get(stripeOffset + slot);
+                if ((value & ~countMask) == epoch) total += value & countMask;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Gets the number of updates (calls to <b>increment()</b>) that happened during the last
+     * {@code numBuckets} completed buckets (which span 1 period). If no full period has passed since the construction
+     * of this counter, it will return -1 instead.<br>
+     * <b>Thread safety</b>: This method can be called from any thread at any time, even while other threads are
+     * calling <b>increment()</b>.
+     */
+    public long getValue() {
+        return getValue(timeSource.nanoTime());
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.knokko.update;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Calls <b>Thread.onSpinWait()</b> when it is available (Java 9+), and does nothing on Java 8.
+ */
+class SpinWait {
+
+    private static final MethodHandle ON_SPIN_WAIT;
+
+    static {
+        MethodHandle onSpinWait;
+        try {
+            onSpinWait = MethodHandles.lookup().findStatic(
+                    Thread.class, "onSpinWait", MethodType.methodType(void.class)
+            );
+        } catch (NoSuchMethodException | IllegalAccessException java8) {
+            onSpinWait = null;
+        }
+        ON_SPIN_WAIT = onSpinWait;
+    }
+
+    static void onSpinWait() {
+        if (ON_SPIN_WAIT != null) {
+            try {
+                ON_SPIN_WAIT.invokeExact();
+            } catch (Throwable shouldNotHappen) {
+                throw new Error(shouldNotHappen);
+            }
+        }
+    }
+
+    static void spinUntil(long deadline) {
+        while (deadline - System.nanoTime() > 0L) onSpinWait();
+    }
+}
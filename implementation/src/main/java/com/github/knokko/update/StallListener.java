@@ -0,0 +1,20 @@
+package com.github.knokko.update;
+
+/**
+ * A listener that is notified by a <i>StallWatchdog</i> when the update function of an <i>UpdateLoop</i> is taking
+ * much longer than expected.
+ */
+@FunctionalInterface
+public interface StallListener {
+
+    /**
+     * Called on the watchdog thread when the update function of {@code loop} is stalling. This is called at most
+     * once per tick, while the update function is still running.
+     * @param loop The update loop whose update function is stalling
+     * @param stallTime How long the update function has been running so far, in nanoseconds. This is a lower bound:
+     *                  the real value may be up to 1 check interval of the watchdog longer.
+     * @param updateThread The thread that is running the update function
+     * @param stackTrace The stack trace of {@code updateThread}, which shows where the update function is stuck
+     */
+    void onStall(UpdateLoop loop, long stallTime, Thread updateThread, StackTraceElement[] stackTrace);
+}
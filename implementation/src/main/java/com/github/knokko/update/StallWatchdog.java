@@ -0,0 +1,167 @@
+package com.github.knokko.update;
+
+import java.util.Arrays;
+
+/**
+ * A <i>StallWatchdog</i> detects update functions that run much longer than the period of their update loop, for
+ * instance because they are stuck in an infinite loop or a deadlock. When it detects such a stall, it captures the
+ * stack trace of the update thread and notifies a <i>StallListener</i>. Usage:
+ * <ul>
+ *     <li>Create 1 <i>StallWatchdog</i>, which can watch all your update loops</li>
+ *     <li>Call <b>watch(loop, periodMultiple, listener)</b> for each update loop that should be watched</li>
+ *     <li>Call <b>shutdown()</b> when you no longer need it</li>
+ * </ul>
+ * The watchdog uses a single daemon thread that checks all watched update loops every {@code checkInterval}
+ * nanoseconds. Watching an update loop costs it only a few volatile writes per tick: it never needs to read the
+ * clock. Stalls are always measured using <b>System.nanoTime()</b>, regardless of the time source of the update loop.
+ * <br>
+ * <b>Thread safety</b>: all methods can be called from any thread at any time. The listeners are called on the
+ * watchdog thread. When a listener throws an exception, it will be passed to the uncaught exception handler of the
+ * watchdog thread, which will continue watching.
+ */
+public class StallWatchdog {
+
+    private final long checkInterval;
+    private final Thread thread;
+
+    private volatile Entry[] entries = new Entry[0];
+    private volatile boolean isShutdown;
+
+    /**
+     * Constructs and starts a <i>StallWatchdog</i> that checks all watched update loops every {@code checkInterval}
+     * nanoseconds. Stalls will be detected at most {@code checkInterval} nanoseconds too late.
+     * @param checkInterval The check interval, in nanoseconds
+     */
+    public StallWatchdog(long checkInterval) {
+        if (checkInterval <= 0) throw new IllegalArgumentException();
+        this.checkInterval = checkInterval;
+        this.thread = new Thread(this::work, "StallWatchdog");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Constructs and starts a <i>StallWatchdog</i> that checks all watched update loops every 10 milliseconds.
+     */
+    public StallWatchdog() {
+        this(10_000_000L);
+    }
+
+    /**
+     * Starts watching {@code loop}. When a single call to its update function takes longer than
+     * {@code periodMultiple} times its (current) period, {@code listener} will be notified. In batched catch-up mode,
+     * a call that processes N ticks may take {@code periodMultiple} times N periods. Watching the same update
+     * loop more than once is allowed, for instance to use different multiples.
+     * @param loop The update loop to watch
+     * @param periodMultiple The number of periods that an update function may take before it is considered stalled.
+     *                       Note that the stall time is also at least the check interval of this watchdog.
+     * @param listener The listener that should be notified when the update function of {@code loop} stalls
+     */
+    public synchronized void watch(UpdateLoop loop, double periodMultiple, StallListener listener) {
+        if (loop == null || !(periodMultiple > 0.0) || listener == null) throw new IllegalArgumentException();
+        if (isShutdown) throw new IllegalStateException("This watchdog has been shut down");
+        Entry[] oldEntries = entries;
+        Entry[] newEntries = Arrays.copyOf(oldEntries, oldEntries.length + 1);
+        newEntries[oldEntries.length] = new Entry(loop, periodMultiple, listener);
+        entries = newEntries;
+    }
+
+    /**
+     * Stops watching {@code loop}. This method does nothing if {@code loop} is not being watched. You should call
+     * this when a watched update loop is stopped, since this watchdog would otherwise keep a reference to it.
+     * @param loop The update loop that should no longer be watched
+     */
+    public synchronized void unwatch(UpdateLoop loop) {
+        Entry[] oldEntries = entries;
+        int numRemaining = 0;
+        for (Entry entry : oldEntries) {
+            if (entry.loop != loop) numRemaining += 1;
+        }
+        if (numRemaining == oldEntries.length) return;
+
+        Entry[] newEntries = new Entry[numRemaining];
+        int index = 0;
+        for (Entry entry : oldEntries) {
+            if (entry.loop != loop) newEntries[index++] = entry;
+        }
+        entries = newEntries;
+    }
+
+    /**
+     * @return The number of update loops that are being watched
+     */
+    public int getNumWatchedLoops() {
+        return entries.length;
+    }
+
+    /**
+     * Stops the watchdog thread and stops watching all update loops. This method does <b>not</b> wait until the
+     * watchdog thread is finished.
+     */
+    public synchronized void shutdown() {
+        isShutdown = true;
+        entries = new Entry[0];
+        thread.interrupt();
+    }
+
+    private void work() {
+        while (!isShutdown) {
+            try {
+                Thread.sleep(checkInterval / 1_000_000L, (int) (checkInterval % 1_000_000L));
+            } catch (InterruptedException interrupted) {
+                continue;
+            }
+
+            for (Entry entry : entries) {
+                try {
+                    entry.check(System.nanoTime());
+                } catch (Throwable failure) {
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, failure);
+                }
+            }
+        }
+    }
+
+    /**
+     * The fields of an entry are only used by the watchdog thread.
+     */
+    private static class Entry {
+
+        final UpdateLoop loop;
+        final double periodMultiple;
+        final StallListener listener;
+
+        long observedSequence;
+        long observedTime;
+        boolean reported;
+
+        Entry(UpdateLoop loop, double periodMultiple, StallListener listener) {
+            this.loop = loop;
+            this.periodMultiple = periodMultiple;
+            this.listener = listener;
+        }
+
+        void check(long currentTime) {
+            long sequence = loop.getTickSequence();
+            if ((sequence & 1) == 0) return;
+
+            if (sequence != observedSequence) {
+                observedSequence = sequence;
+                observedTime = currentTime;
+                reported = false;
+                return;
+            }
+
+            long stallTime = currentTime - observedTime;
+            if (reported || stallTime < periodMultiple * loop.getBatchSize() * loop.getPeriod()) return;
+
+            Thread updateThread = loop.getUpdateThread();
+            StackTraceElement[] stackTrace = updateThread.getStackTrace();
+
+            // Don't report the stall if the update function returned while the stack trace was being captured
+            if (loop.getTickSequence() != sequence) return;
+            reported = true;
+            listener.onStall(loop, stallTime, updateThread, stackTrace);
+        }
+    }
+}
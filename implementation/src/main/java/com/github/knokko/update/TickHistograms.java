@@ -0,0 +1,53 @@
+package com.github.knokko.update;
+
+/**
+ * A {@link TickListener} that records the lateness (time between the scheduled start and the actual start) and the
+ * duration (execution time of the update function) of every tick of an <i>UpdateLoop</i> in a
+ * <i>LatencyHistogram</i>. Usage:
+ * <ul>
+ *     <li>Create an instance of <i>TickHistograms</i></li>
+ *     <li>Add it to an update loop using <b>updateLoop.addTickListener(histograms)</b></li>
+ *     <li>Periodically call e.g. <b>histograms.getDuration().snapshotAndReset()</b> on a reporting thread</li>
+ * </ul>
+ */
+public class TickHistograms implements TickListener {
+
+    private final LatencyHistogram lateness, duration;
+
+    /**
+     * @param lateness The histogram in which the lateness of each tick should be recorded
+     * @param duration The histogram in which the execution time of each tick should be recorded
+     */
+    public TickHistograms(LatencyHistogram lateness, LatencyHistogram duration) {
+        if (lateness == null || duration == null) throw new IllegalArgumentException();
+        this.lateness = lateness;
+        this.duration = duration;
+    }
+
+    /**
+     * Constructs an instance with 2 new histograms, which have the default precision.
+     */
+    public TickHistograms() {
+        this(new LatencyHistogram(), new LatencyHistogram());
+    }
+
+    @Override
+    public void onTick(UpdateLoop loop, long scheduledTime, long startTime, long endTime, long droppedBacklog) {
+        lateness.record(startTime - scheduledTime);
+        duration.record(endTime - startTime);
+    }
+
+    /**
+     * @return The histogram containing the lateness of each tick, in nanoseconds
+     */
+    public LatencyHistogram getLateness() {
+        return lateness;
+    }
+
+    /**
+     * @return The histogram containing the execution time of the update function of each tick, in nanoseconds
+     */
+    public LatencyHistogram getDuration() {
+        return duration;
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.knokko.update;
+
+/**
+ * A listener that is notified after each update (tick) of an <i>UpdateLoop</i>. It can be added using
+ * <b>UpdateLoop.addTickListener</b>. Listeners are called on the update thread, directly after the update function,
+ * so they should be cheap. All times are in nanoseconds, and are based on the time source of the update loop, which
+ * is <b>System.nanoTime()</b> by default.
+ * In <i>batched catch-up mode</i> (see <i>BatchUpdateFunction</i>), listeners are called once per batch, so a single
+ * callback can cover several ticks. In that case, the scheduled time is the scheduled time of the last tick of the
+ * batch, and {@code endTime - startTime} is the duration of the whole batch. Use <b>loop.getBatchSize()</b> to get
+ * the number of ticks in the batch.
+ */
+@FunctionalInterface
+public interface TickListener {
+
+    /**
+     * Called after the update function of {@code loop} has returned.
+     * @param loop The update loop whose update function was just executed
+     * @param scheduledTime The time at which the update function was supposed to be executed
+     * @param startTime The time at which the update function was actually started. The difference between this and
+     *                  {@code scheduledTime} is the lateness (or jitter) of the update.
+     * @param endTime The time at which the update function returned. In batched catch-up mode, the difference
+     *                between this and {@code startTime} is the duration of all <b>loop.getBatchSize()</b> ticks.
+     * @param droppedBacklog The amount of backlog that was discarded since the previous tick, because it exceeded
+     *                       the maximum backlog of the update loop. This is usually 0.
+     */
+    void onTick(UpdateLoop loop, long scheduledTime, long startTime, long endTime, long droppedBacklog);
+}
@@ -0,0 +1,113 @@
+package com.github.knokko.update;
+
+/**
+ * A {@link TickListener} that keeps track of some timing statistics of an <i>UpdateLoop</i>. Usage:
+ * <ul>
+ *     <li>Create an instance of <i>TickMetrics</i></li>
+ *     <li>Add it to an update loop using <b>updateLoop.addTickListener(metrics)</b></li>
+ *     <li>Call any of its getters from any thread to read the statistics</li>
+ * </ul>
+ * Recording the statistics doesn't allocate any memory, and reading them doesn't need any locks. Note that each
+ * getter returns the most recent value, but the values of different getters may belong to different ticks.<br>
+ * <b>Thread safety</b>: an instance of this class must be added to at most 1 update loop. All getters can be called
+ * from any thread at any time.
+ */
+@SuppressWarnings("NonAtomicOperationOnVolatileField")
+public class TickMetrics implements TickListener {
+
+    private volatile long tickCount;
+    private volatile long overrunCount;
+
+    private volatile long lastLateness;
+    private volatile long maxLateness;
+    private volatile long totalLateness;
+
+    private volatile long lastDuration;
+    private volatile long maxDuration;
+    private volatile long totalDuration;
+
+    private volatile long totalDroppedBacklog;
+
+    @Override
+    public void onTick(UpdateLoop loop, long scheduledTime, long startTime, long endTime, long droppedBacklog) {
+        long lateness = Math.max(0L, startTime - scheduledTime);
+        long duration = endTime - startTime;
+
+        lastLateness = lateness;
+        if (lateness > maxLateness) maxLateness = lateness;
+        totalLateness += lateness;
+
+        lastDuration = duration;
+        if (duration > maxDuration) maxDuration = duration;
+        totalDuration += duration;
+
+        totalDroppedBacklog += droppedBacklog;
+        // In batched catch-up mode, a batch of N ticks is only an overrun when it took longer than N periods
+        if (duration > loop.getBatchSize() * loop.getPeriod()) overrunCount += 1;
+        tickCount += 1;
+    }
+
+    /**
+     * @return The number of ticks (calls to the update function) that have been recorded
+     */
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * @return The number of ticks whose update function took longer than the period of the update loop. In batched
+     * catch-up mode, a batch of N ticks counts as 1 overrun when it took longer than N periods.
+     */
+    public long getOverrunCount() {
+        return overrunCount;
+    }
+
+    /**
+     * @return The time between the scheduled start and the actual start of the last tick, in nanoseconds
+     */
+    public long getLastLateness() {
+        return lastLateness;
+    }
+
+    /**
+     * @return The largest lateness of all recorded ticks, in nanoseconds
+     */
+    public long getMaxLateness() {
+        return maxLateness;
+    }
+
+    /**
+     * @return The sum of the lateness of all recorded ticks, in nanoseconds
+     */
+    public long getTotalLateness() {
+        return totalLateness;
+    }
+
+    /**
+     * @return The execution time of the update function during the last tick, in nanoseconds
+     */
+    public long getLastDuration() {
+        return lastDuration;
+    }
+
+    /**
+     * @return The largest execution time of the update function of all recorded ticks, in nanoseconds
+     */
+    public long getMaxDuration() {
+        return maxDuration;
+    }
+
+    /**
+     * @return The total execution time of the update function during all recorded ticks, in nanoseconds
+     */
+    public long getTotalDuration() {
+        return totalDuration;
+    }
+
+    /**
+     * @return The total amount of backlog that was discarded because it exceeded the maximum backlog, in nanoseconds
+     */
+    public long getTotalDroppedBacklog() {
+        return totalDroppedBacklog;
+    }
+}
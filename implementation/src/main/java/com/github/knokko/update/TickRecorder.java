@@ -0,0 +1,245 @@
+package com.github.knokko.update;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link TickListener} that remembers the timing of the last {@code capacity} ticks of an <i>UpdateLoop</i> in a
+ * fixed-size ring buffer, which can be dumped to a compact binary trace file at any time. This is useful for
+ * post-mortem analysis of lag spikes. Usage:
+ * <ul>
+ *     <li>Create a <i>TickRecorder</i> with the desired capacity</li>
+ *     <li>Add it to an update loop using <b>updateLoop.addTickListener(recorder)</b></li>
+ *     <li>Call <b>recorder.dump(path)</b> whenever you notice a lag spike</li>
+ *     <li>Use <b>TickRecorder.readTrace(path)</b> to analyze the trace file later</li>
+ * </ul>
+ * Recording a tick doesn't allocate any memory or acquire any locks: it just writes 4 longs into the ring buffer, so
+ * it can be left enabled in production. Dumping doesn't block the update loop either: ticks that are overwritten
+ * while they are being dumped are simply left out of the dump.<br>
+ * <b>Thread safety</b>: an instance of this class must be added to at most 1 update loop. All other methods can be
+ * called from any thread at any time.
+ */
+public class TickRecorder implements TickListener {
+
+    /**
+     * The first 4 bytes of each trace file, which spell 'TICK' in ASCII
+     */
+    static final int MAGIC = 0x5449434B;
+    static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+    private static final int FIELDS_PER_TICK = 4;
+    private static final int TICK_SIZE = 8 * (1 + FIELDS_PER_TICK);
+
+    private final SingleWriterRing ring;
+
+    /**
+     * @param capacity The maximum number of ticks that can be remembered. When more ticks are recorded, the oldest
+     *                 ticks will be overwritten.
+     */
+    public TickRecorder(int capacity) {
+        this.ring = new SingleWriterRing(capacity, FIELDS_PER_TICK);
+    }
+
+    /**
+     * Constructs a <i>TickRecorder</i> that remembers the last 10000 ticks
+     */
+    public TickRecorder() {
+        this(10_000);
+    }
+
+    @Override
+    public void onTick(UpdateLoop loop, long scheduledTime, long startTime, long endTime, long droppedBacklog) {
+        int offset = ring.getNextOffset();
+        ring.setField(offset, scheduledTime);
+        ring.setField(offset + 1, startTime);
+        ring.setField(offset + 2, endTime);
+        ring.setField(offset + 3, droppedBacklog);
+        ring.publish();
+    }
+
+    /**
+     * @return The maximum number of ticks that can be remembered
+     */
+    public int getCapacity() {
+        return ring.getCapacity();
+    }
+
+    /**
+     * @return The total number of ticks that have been recorded, including the ones that have been overwritten
+     */
+    public long getNumRecordedTicks() {
+        return ring.getNumRecords();
+    }
+
+    /**
+     * Copies the remembered ticks into a list.
+     * @return The remembered ticks, from oldest to newest
+     */
+    public List<Tick> snapshot() {
+        SingleWriterRing.Copy copy = ring.copy();
+        long[] fields = copy.fields;
+        List<Tick> ticks = new ArrayList<>(copy.getNumRecords());
+        for (int index = 0; index < copy.getNumRecords(); index++) {
+            int offset = index * FIELDS_PER_TICK;
+            ticks.add(new Tick(
+                    copy.firstRecord + index, fields[offset], fields[offset + 1], fields[offset + 2], fields[offset + 3]
+            ));
+        }
+        return ticks;
+    }
+
+    /**
+     * Writes the remembered ticks to {@code channel}, in the binary trace format that can be read by
+     * <b>readTrace</b>. The format is:
+     * <ul>
+     *     <li>a header containing the magic number 'TICK', the version (1), the total number of recorded ticks, and
+     *     the number of ticks in this file</li>
+     *     <li>for each tick (oldest first): the tick number, the scheduled time, the start time, the end time,
+     *     and the dropped backlog</li>
+     * </ul>
+     * All values are stored in big-endian order: the header as int, long, int, and the ticks as 5 longs.
+     * @param channel The channel to write to. It will not be closed.
+     * @return The number of ticks that were written
+     */
+    public int dump(WritableByteChannel channel) throws IOException {
+        long numRecordedTicks = ring.getNumRecords();
+        List<Tick> ticks = snapshot();
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + TICK_SIZE * ticks.size());
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(numRecordedTicks).putInt(ticks.size());
+        for (Tick tick : ticks) {
+            buffer.putLong(tick.number).putLong(tick.scheduledTime).putLong(tick.startTime);
+            buffer.putLong(tick.endTime).putLong(tick.droppedBacklog);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        return ticks.size();
+    }
+
+    /**
+     * Writes the remembered ticks to the file at {@code path}, which will be created or overwritten. See
+     * <b>dump(WritableByteChannel)</b> for the file format.
+     * @return The number of ticks that were written
+     */
+    public int dump(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(
+                path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE
+        )) {
+            return dump(channel);
+        }
+    }
+
+    /**
+     * Reads a trace that was written by <b>dump</b>.
+     * @param channel The channel to read from. It will not be closed.
+     * @return The ticks in the trace, from oldest to newest
+     * @throws IOException If the channel ends too early, or if it doesn't contain a valid trace
+     */
+    public static List<Tick> readTrace(ReadableByteChannel channel) throws IOException {
+        ByteBuffer header = readFully(channel, HEADER_SIZE);
+        if (header.getInt() != MAGIC) throw new IOException("This is not a tick trace");
+        int version = header.getInt();
+        if (version != VERSION) throw new IOException("Unsupported tick trace version " + version);
+        header.getLong();
+        int numTicks = header.getInt();
+        if (numTicks < 0) throw new IOException("Invalid number of ticks: " + numTicks);
+
+        ByteBuffer content = readFully(channel, TICK_SIZE * numTicks);
+        List<Tick> ticks = new ArrayList<>(numTicks);
+        for (int counter = 0; counter < numTicks; counter++) {
+            ticks.add(new Tick(
+                    content.getLong(), content.getLong(), content.getLong(), content.getLong(), content.getLong()
+            ));
+        }
+        return Collections.unmodifiableList(ticks);
+    }
+
+    /**
+     * Reads a trace file that was written by <b>dump</b>.
+     * @return The ticks in the trace, from oldest to newest
+     */
+    public static List<Tick> readTrace(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return readTrace(channel);
+        }
+    }
+
+    private static ByteBuffer readFully(ReadableByteChannel channel, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) throw new IOException("Unexpected end of tick trace");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * The timing of a single recorded tick. All times are in nanoseconds, and are based on the time source of the
+     * update loop. See <i>TickListener</i> for the meaning of each field.
+     */
+    public static class Tick {
+
+        private final long number;
+        private final long scheduledTime;
+        private final long startTime;
+        private final long endTime;
+        private final long droppedBacklog;
+
+        Tick(long number, long scheduledTime, long startTime, long endTime, long droppedBacklog) {
+            this.number = number;
+            this.scheduledTime = scheduledTime;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.droppedBacklog = droppedBacklog;
+        }
+
+        /**
+         * @return The number of the tick: the first recorded tick has number 0
+         */
+        public long getNumber() {
+            return number;
+        }
+
+        /**
+         * @return The time at which the update function was supposed to be executed
+         */
+        public long getScheduledTime() {
+            return scheduledTime;
+        }
+
+        /**
+         * @return The time at which the update function was actually started
+         */
+        public long getStartTime() {
+            return startTime;
+        }
+
+        /**
+         * @return The time at which the update function returned
+         */
+        public long getEndTime() {
+            return endTime;
+        }
+
+        /**
+         * @return The amount of backlog that was discarded right before this tick
+         */
+        public long getDroppedBacklog() {
+            return droppedBacklog;
+        }
+
+        @Override
+        public String toString() {
+            return "Tick(" + number + ": scheduled=" + scheduledTime + ", start=" + startTime + ", end=" + endTime +
+                    ", dropped=" + droppedBacklog + ")";
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.github.knokko.update;
+
+/**
+ * The clock that is used by an <i>UpdateLoop</i> or an <i>UpdateCounter</i>. Normally, this is just
+ * <b>System.nanoTime()</b> ({@link #SYSTEM}), but it can be replaced by e.g. a <i>VirtualClock</i> to replay
+ * recorded sessions, or to run simulations faster than real time.
+ */
+@FunctionalInterface
+public interface TimeSource {
+
+    /**
+     * The default time source, which uses <b>System.nanoTime()</b>
+     */
+    TimeSource SYSTEM = System::nanoTime;
+
+    /**
+     * @return The current time, in nanoseconds. Like <b>System.nanoTime()</b>, only the differences between the
+     * returned values are meaningful.
+     */
+    long nanoTime();
+}
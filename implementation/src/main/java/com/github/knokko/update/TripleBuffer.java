@@ -0,0 +1,86 @@
+package com.github.knokko.update;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * A lock-free triple buffer that can be used to hand over (a copy of) the game state from an update loop to a render
+ * loop, without ever blocking either of them. It holds 3 instances of {@code T}: 1 is owned by the writer (update
+ * thread), 1 is owned by the reader (render thread), and 1 is shared between them. Usage:
+ * <ul>
+ *     <li>The update function fills the buffer returned by <b>getWriteBuffer()</b>, and then calls <b>publish()</b>
+ *     </li>
+ *     <li>The render loop calls <b>getReadBuffer()</b> at the start of every frame, and renders its contents</li>
+ * </ul>
+ * Note that <b>getWriteBuffer()</b> returns a buffer containing outdated state (typically the state of 2 or more
+ * ticks ago), so the update function should overwrite all of its contents before publishing it.<br>
+ * <b>Thread safety</b>: <b>getWriteBuffer()</b> and <b>publish()</b> must only be called by 1 thread at a time, and
+ * <b>getReadBuffer()</b> must only be called by 1 (other) thread at a time. <b>hasNewData()</b> can be called from
+ * any thread at any time.
+ * @param <T> The type of the buffers
+ */
+public class TripleBuffer<T> {
+
+    private static final int INDEX_MASK = 3;
+    private static final int NEW_DATA = 4;
+
+    private final Object[] buffers;
+
+    /**
+     * The index of the shared buffer in the lowest 2 bits, and the {@code NEW_DATA} bit if the shared buffer was
+     * published, but not yet taken by the reader.
+     */
+    private final AtomicInteger sharedState = new AtomicInteger(1);
+    private int writeIndex = 2;
+    private int readIndex = 0;
+
+    /**
+     * @param createBuffer This function will be called 3 times to create the buffers. It must not return the same
+     *                     instance more than once.
+     */
+    public TripleBuffer(Supplier<T> createBuffer) {
+        this.buffers = new Object[] { createBuffer.get(), createBuffer.get(), createBuffer.get() };
+        if (buffers[0] == buffers[1] || buffers[0] == buffers[2] || buffers[1] == buffers[2]) {
+            throw new IllegalArgumentException("The buffers must be distinct");
+        }
+    }
+
+    /**
+     * <b>Thread safety</b>: must only be called by the writer thread.
+     * @return The buffer that the writer should fill before calling <b>publish()</b>
+     */
+    @SuppressWarnings("unchecked")
+    public T getWriteBuffer() {
+        return (T) buffers[writeIndex];
+    }
+
+    /**
+     * Publishes the current write buffer, so that the next call to <b>getReadBuffer()</b> will return it. If the
+     * reader didn't take the previously published buffer, it will be overwritten.<br>
+     * <b>Thread safety</b>: must only be called by the writer thread.
+     */
+    public void publish() {
+        writeIndex = sharedState.getAndSet(writeIndex | NEW_DATA) & INDEX_MASK;
+    }
+
+    /**
+     * Gets the most recently published buffer. If nothing has been published since the previous call, it will
+     * return the same buffer as the previous call. The reader can safely use the returned buffer until the next
+     * call to <b>getReadBuffer()</b>.<br>
+     * <b>Thread safety</b>: must only be called by the reader thread.
+     * @return The most recently published buffer (or an initial buffer if nothing has been published yet)
+     */
+    @SuppressWarnings("unchecked")
+    public T getReadBuffer() {
+        if ((sharedState.get() & NEW_DATA) != 0) readIndex = sharedState.getAndSet(readIndex) & INDEX_MASK;
+        return (T) buffers[readIndex];
+    }
+
+    /**
+     * <b>Thread safety</b>: this method can be called from any thread at any time.
+     * @return True if a buffer has been published since the last call to <b>getReadBuffer()</b>
+     */
+    public boolean hasNewData() {
+        return (sharedState.get() & NEW_DATA) != 0;
+    }
+}
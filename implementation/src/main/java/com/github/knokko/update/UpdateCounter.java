@@ -11,12 +11,23 @@ package com.github.knokko.update;
 public class UpdateCounter {
 
     private final long period;
+    private final TimeSource timeSource;
 
     /**
      * @param period The period of the counter. The number of updates per period will be counted.
+     * @param timeSource The clock that should be used to measure the time, for instance a <i>VirtualClock</i>
      */
-    public UpdateCounter(long period) {
+    public UpdateCounter(long period, TimeSource timeSource) {
+        if (timeSource == null) throw new IllegalArgumentException();
         this.period = period;
+        this.timeSource = timeSource;
+    }
+
+    /**
+     * @param period The period of the counter. The number of updates per period will be counted.
+     */
+    public UpdateCounter(long period) {
+        this(period, TimeSource.SYSTEM);
     }
 
     /**
@@ -27,11 +38,16 @@ public class UpdateCounter {
     }
 
     private long referenceTime;
+    private boolean hasStarted;
     private long counter = 0;
     private volatile long value = -1;
 
     void increment(long currentTime) {
-        if (referenceTime == 0L) referenceTime = currentTime;
+        // Don't use referenceTime == 0 to detect the first increment, since 0 is a valid time of a VirtualClock
+        if (!hasStarted) {
+            referenceTime = currentTime;
+            hasStarted = true;
+        }
 
         long passedTime = currentTime - referenceTime;
         if (passedTime >= period) {
@@ -48,7 +64,7 @@ public class UpdateCounter {
      * <b>Thread safety</b>: This method must always be called on the same thread.
      */
     public void increment() {
-        increment(System.nanoTime());
+        increment(timeSource.nanoTime());
     }
 
     /**
@@ -1,5 +1,11 @@
 package com.github.knokko.update;
 
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 
 /**
@@ -8,27 +14,137 @@ import java.util.function.Consumer;
 public class UpdateLoop implements Runnable {
 
     private final Consumer<UpdateLoop> updateFunction;
+    private final BatchUpdateFunction batchUpdateFunction;
 
     private volatile long period;
     private volatile long maximumBacklog;
-    private volatile Reference reference;
+    private volatile WaitStrategy waitStrategy = WaitStrategy.SLEEP;
+    private volatile TimeSource timeSource = TimeSource.SYSTEM;
+    private volatile TickListener[] tickListeners = new TickListener[0];
+    private volatile boolean isDriftFree = false;
+
     private volatile boolean shouldContinue = true;
     private volatile boolean didStart = false;
+    private volatile boolean isTriggered = false;
+
+    /**
+     * The thread that is currently inside <b>run()</b>, which needs to be unparked when this update loop should wake
+     * up early
+     */
+    private volatile Thread waitingThread;
+    private final CountDownLatch termination = new CountDownLatch(1);
+
+    /**
+     * This is run when this update loop terminates. The <i>UpdateLoopGroup</i> uses it to terminate its members.
+     */
+    volatile Runnable terminationHook;
+
+    /**
+     * This lock guards the writers of the period seqlock and the tick listeners. It is private, so that code that
+     * synchronizes on an update loop can't block <b>setPeriod</b>.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * These fields are only written inside <b>changePeriod</b>, while holding {@code lock}.
+     * {@code periodVersion} is odd while they are being written (seqlock).
+     */
+    private volatile long periodChangeTime;
+    private volatile int periodVersion;
+
+    volatile UpdateScheduler.Task schedulerTask;
+
+    /**
+     * These fields are only used by the thread that runs the update loop. The next update is scheduled at
+     * {@code referenceTime + referenceCounter * activePeriod}.
+     */
+    private long referenceTime;
+    private long referenceCounter;
+    private long activePeriod;
+    private int activePeriodVersion = -1;
+
+    /**
+     * The number of scheduled ticks that were executed before the current reference time (only used by the thread
+     * that runs the update loop)
+     */
+    private long baseTicks;
+
+    /**
+     * These fields are a copy of the schedule ({@code referenceTime}, {@code activePeriod}, and {@code baseTicks})
+     * that can be read by any thread, for <b>getOwedTicks</b>. They are only written by the thread that runs the
+     * update loop, and {@code scheduleVersion} is odd while they are being written (seqlock).
+     */
+    private volatile long publishedReferenceTime;
+    private volatile long publishedPeriod;
+    private volatile long publishedBaseTicks;
+    private volatile int scheduleVersion;
+    private volatile long executedTicks;
+
+    private long scheduledTime;
+    private long nextScheduledTime;
+    private long pendingTicks;
+    private volatile long batchSize = 1L;
+    private long droppedBacklog;
+    private boolean isExtraTick;
+    private volatile long lastTickTime;
+    private volatile boolean hasTicked;
+
+    /**
+     * These fields are used by the <i>StallWatchdog</i>. {@code tickSequence} is odd while the update function is
+     * running, and {@code updateThread} is the thread that runs (or last ran) the update function. The
+     * {@code batchSize} is written before {@code tickSequence}, so the watchdog sees the size of the current batch.
+     */
+    private volatile long tickSequence;
+    private volatile Thread updateThread;
 
     /**
      * Constructs an <i>UpdateLoop</i> that attempts to execute {@code updateFunction} every {@code initialPeriod}
      * nanoseconds. It will allow a maximum backlog of {@code initialMaximumBacklog} nanoseconds. Any additional
-     * backlog will be discarded. The period and maximum backlog can be changed at any time.
+     * backlog will be discarded, unless drift-free mode is enabled (see <b>setDriftFree</b>). The period and maximum
+     * backlog can be changed at any time.
      * @param updateFunction The function that should be called periodically. The parameter will always be this
      *                       <i>UpdateLoop</i>, which is convenient for e.g. stopping it.
      * @param initialPeriod The initial period of the update function, in nanoseconds.
      * @param initialMaximumBacklog The initial maximum backlog of the update function, in nanoseconds.
      */
     public UpdateLoop(Consumer<UpdateLoop> updateFunction, long initialPeriod, long initialMaximumBacklog) {
-        if (updateFunction == null || initialPeriod < 0 || initialMaximumBacklog < 0) {
-            throw new IllegalArgumentException();
-        }
+        this(updateFunction, null, initialPeriod, initialMaximumBacklog);
+        if (updateFunction == null) throw new IllegalArgumentException();
+    }
+
+    /**
+     * Constructs an <i>UpdateLoop</i> that attempts to execute {@code updateFunction} every {@code initialPeriod}
+     * nanoseconds, but in <i>batched catch-up mode</i>: when the update loop is behind schedule, the update function
+     * will be called once with the number of pending ticks, rather than once for each pending tick. The number of
+     * ticks per call is bounded by the maximum backlog, which is initially {@code initialMaximumBacklog}
+     * nanoseconds. In drift-free mode, the pending ticks that exceed this bound are passed in the next call(s).
+     * @param updateFunction The function that should be called periodically
+     * @param initialPeriod The initial period of the update function, in nanoseconds.
+     * @param initialMaximumBacklog The initial maximum backlog of the update function, in nanoseconds.
+     */
+    public UpdateLoop(BatchUpdateFunction updateFunction, long initialPeriod, long initialMaximumBacklog) {
+        this(null, updateFunction, initialPeriod, initialMaximumBacklog);
+        if (updateFunction == null) throw new IllegalArgumentException();
+    }
+
+    /**
+     * Constructs an <i>UpdateLoop</i> in <i>batched catch-up mode</i> that attempts to execute
+     * {@code updateFunction} every {@code initialPeriod} nanoseconds. It will use a default maximum backlog of 500
+     * milliseconds.
+     * @param updateFunction The function that should be called periodically
+     * @param initialPeriod The initial period of the update function, in nanoseconds
+     */
+    public UpdateLoop(BatchUpdateFunction updateFunction, long initialPeriod) {
+        this(updateFunction, initialPeriod, 500_000_000L);
+    }
+
+    private UpdateLoop(
+            Consumer<UpdateLoop> updateFunction, BatchUpdateFunction batchUpdateFunction,
+            long initialPeriod, long initialMaximumBacklog
+    ) {
+        if (initialPeriod < 0 || initialMaximumBacklog < 0) throw new IllegalArgumentException();
         this.updateFunction = updateFunction;
+        this.batchUpdateFunction = batchUpdateFunction;
         this.period = initialPeriod;
         this.maximumBacklog = initialMaximumBacklog;
     }
@@ -47,13 +163,70 @@ public class UpdateLoop implements Runnable {
      * Changes the period of this update loop to {@code newPeriod} nanoseconds. Even though this class allows any
      * non-negative period, periods below approximately 100 nanoseconds can't be achieved because the
      * update loop overhead will become larger than the update period...<br>
+     * When {@code newPeriod} is equal to the current period, this method returns immediately, so it is cheap to call
+     * it every frame. Every real change restarts the schedule of the update loop at the moment this method is
+     * called, so the next update will happen as soon as possible, and the backlog is discarded. Changing the period
+     * every frame will thus make the update loop tick at the frame rate of the caller. When this method is called
+     * during an update (for instance from the update function or a tick listener), that update counts as the first
+     * update of the new schedule, so the next update will happen 1 new period after the call. In drift-free mode,
+     * the new period starts at the next scheduled update instead, and the backlog is kept (see <b>setDriftFree</b>).
+     * This method doesn't allocate any memory.<br>
      * <b>Thread safety</b>: this method can be called from any thread at any time.
      * @param newPeriod The new period, in nanoseconds
      */
     public void setPeriod(long newPeriod) {
         if (newPeriod < 0) throw new IllegalArgumentException();
-        reference = new Reference();
-        period = newPeriod;
+        if (newPeriod == period) return;
+        changePeriod(newPeriod);
+        wakeUp();
+    }
+
+    @SuppressWarnings("NonAtomicOperationOnVolatileField")
+    private void changePeriod(long newPeriod) {
+        synchronized (lock) {
+            periodVersion += 1;
+            periodChangeTime = timeSource.nanoTime();
+            period = newPeriod;
+            periodVersion += 1;
+        }
+    }
+
+    /**
+     * Applies the latest period change (if any) to the reference fields. This is called on the update thread, so
+     * that only the update thread needs to touch the reference fields.
+     */
+    private void applyPeriodChange() {
+        int version = periodVersion;
+        if (version == activePeriodVersion) return;
+
+        long newTime, newPeriod;
+        do {
+            while ((version & 1) != 0) {
+                SpinWait.onSpinWait();
+                version = periodVersion;
+            }
+            newTime = periodChangeTime;
+            newPeriod = period;
+        } while (version != (version = periodVersion));
+
+        // In drift-free mode, the new period starts at the next scheduled update, so the schedule stays continuous
+        if (isDriftFree && activePeriodVersion != -1) referenceTime += referenceCounter * activePeriod;
+        else referenceTime = newTime;
+
+        baseTicks += referenceCounter;
+        referenceCounter = 0L;
+        activePeriod = newPeriod;
+        activePeriodVersion = version;
+        publishSchedule();
+    }
+
+    @SuppressWarnings("NonAtomicOperationOnVolatileField")
+    private void publishSchedule() {
+        scheduleVersion += 1;
+        publishedReferenceTime = referenceTime;
+        publishedPeriod = activePeriod;
+        publishedBaseTicks = baseTicks;
+        scheduleVersion += 1;
     }
 
     /**
@@ -66,6 +239,146 @@ public class UpdateLoop implements Runnable {
         maximumBacklog = newBacklog;
     }
 
+    /**
+     * Enables or disables <i>drift-free mode</i>, which is disabled by default. In drift-free mode:
+     * <ul>
+     *     <li>the backlog is never discarded: when the update loop falls behind, it will catch up on all missed
+     *     updates, no matter how large the backlog is. In batched catch-up mode, the maximum backlog still bounds
+     *     the number of ticks per call of the update function, and the remaining ticks stay owed until the next
+     *     call(s).</li>
+     *     <li>a period change takes effect at the next scheduled update, rather than restarting the schedule at the
+     *     moment of the change</li>
+     * </ul>
+     * Together, this guarantees that the update function will be called exactly once for each period that has
+     * passed, without cumulative error, regardless of how long the update loop runs. Since the schedule is computed
+     * using integer nanoseconds (rather than by adding up sleep times), there is no rounding error either. This is
+     * useful for e.g. metering or billing loops. Use <b>getOwedTicks</b> and <b>getExecutedTicks</b> to verify this.
+     * <br>
+     * <b>Thread safety</b>: this method can be called from any thread at any time.
+     * @param driftFree True to enable drift-free mode, false to disable it
+     */
+    public void setDriftFree(boolean driftFree) {
+        isDriftFree = driftFree;
+    }
+
+    /**
+     * <b>Thread safety</b>: this method can be called from any thread at any time.
+     * @return True if this update loop is in drift-free mode (see <b>setDriftFree</b>)
+     */
+    public boolean isDriftFree() {
+        return isDriftFree;
+    }
+
+    /**
+     * <b>Thread safety</b>: this method can be called from any thread at any time.
+     * @return The total number of scheduled ticks that have been executed since this update loop was started. In
+     * batched catch-up mode, this includes all ticks of each batch. Extra updates (see <b>trigger()</b>) are not
+     * counted.
+     */
+    public long getExecutedTicks() {
+        return executedTicks;
+    }
+
+    /**
+     * Computes the total number of ticks that should have been executed by now, according to the schedule of this
+     * update loop. The difference between this and <b>getExecutedTicks()</b> is the number of ticks that this update
+     * loop is behind. In drift-free mode, this is exactly 1 more than the number of periods that have passed since
+     * the update loop was started (taking period changes into account). Otherwise, backlog that was discarded and
+     * the remainder of the period at each period change are not owed.<br>
+     * For the members of an <i>UpdateLoopGroup</i>, this is simply the number of executed ticks.<br>
+     * <b>Thread safety</b>: this method can be called from any thread at any time.
+     * @return The number of ticks that should have been executed by now
+     */
+    public long getOwedTicks() {
+        long currentTime = timeSource.nanoTime();
+        long startTime, currentPeriod, ticks;
+        int version = scheduleVersion;
+        do {
+            while ((version & 1) != 0) {
+                SpinWait.onSpinWait();
+                version = scheduleVersion;
+            }
+            startTime = publishedReferenceTime;
+            currentPeriod = publishedPeriod;
+            ticks = publishedBaseTicks;
+        } while (version != (version = scheduleVersion));
+
+        if (version == 0 || currentPeriod == 0L) return Math.max(ticks, executedTicks);
+        if (currentTime - startTime >= 0L) ticks += 1L + (currentTime - startTime) / currentPeriod;
+        return ticks;
+    }
+
+    /**
+     * Changes the way this update loop waits until its next update. The default strategy is
+     * <b>WaitStrategy.SLEEP</b>, which is only accurate to approximately 1 millisecond. Use e.g. a
+     * <i>CalibratedWaitStrategy</i> if you need better precision.<br>
+     * When the time source of this update loop is a <i>VirtualClock</i>, the wait strategy must be that virtual
+     * clock: any other strategy would wait for a clock that never advances, so this method will throw an
+     * <i>IllegalStateException</i>.<br>
+     * <b>Thread safety</b>: this method can be called from any thread at any time. The new strategy will be used
+     * after the current wait (if any) is finished.
+     * @param newStrategy The new wait strategy
+     */
+    public void setWaitStrategy(WaitStrategy newStrategy) {
+        if (newStrategy == null) throw new IllegalArgumentException();
+        TimeSource currentTimeSource = timeSource;
+        if (currentTimeSource instanceof VirtualClock && newStrategy != currentTimeSource) {
+            throw new IllegalStateException("The wait strategy of a loop with a virtual clock must be that clock");
+        }
+        waitStrategy = newStrategy;
+    }
+
+    /**
+     * Changes the clock of this update loop, which is <b>TimeSource.SYSTEM</b> by default. This must be done before
+     * the update loop is started. When {@code newTimeSource} is a <i>VirtualClock</i>, the wait strategy of this
+     * update loop will also be changed to that virtual clock, so that this update loop will advance the virtual clock
+     * rather than sleeping. After that, <b>setWaitStrategy</b> will reject any other wait strategy.<br>
+     * <b>Thread safety</b>: this method must be called before the update loop is started.
+     * @param newTimeSource The new time source
+     */
+    public void setTimeSource(TimeSource newTimeSource) {
+        if (newTimeSource == null) throw new IllegalArgumentException();
+        if (didStart) throw new IllegalStateException("The time source can't be changed after the loop started");
+        timeSource = newTimeSource;
+        if (newTimeSource instanceof VirtualClock) waitStrategy = (VirtualClock) newTimeSource;
+    }
+
+    /**
+     * Adds a listener that will be called after every update, for instance a <i>TickMetrics</i>.<br>
+     * <b>Thread safety</b>: this method can be called from any thread at any time.
+     * @param listener The listener to be added
+     */
+    public void addTickListener(TickListener listener) {
+        if (listener == null) throw new IllegalArgumentException();
+        synchronized (lock) {
+            TickListener[] oldListeners = tickListeners;
+            TickListener[] newListeners = Arrays.copyOf(oldListeners, oldListeners.length + 1);
+            newListeners[oldListeners.length] = listener;
+            tickListeners = newListeners;
+        }
+    }
+
+    /**
+     * Removes a listener that was previously added using <b>addTickListener</b>. This method does nothing if the
+     * listener was not added.<br>
+     * <b>Thread safety</b>: this method can be called from any thread at any time.
+     * @param listener The listener to be removed
+     */
+    public void removeTickListener(TickListener listener) {
+        synchronized (lock) {
+            TickListener[] oldListeners = tickListeners;
+            for (int index = 0; index < oldListeners.length; index++) {
+                if (oldListeners[index] == listener) {
+                    TickListener[] newListeners = new TickListener[oldListeners.length - 1];
+                    System.arraycopy(oldListeners, 0, newListeners, 0, index);
+                    System.arraycopy(oldListeners, index + 1, newListeners, index, newListeners.length - index);
+                    tickListeners = newListeners;
+                    return;
+                }
+            }
+        }
+    }
+
     /**
      * <b>Thread safety</b>: this method can be called from any thread at any time.
      * @return The current period of this update loop, in nanoseconds.
@@ -83,10 +396,82 @@ public class UpdateLoop implements Runnable {
     }
 
     /**
-     * Starts this update loop on a new thread. This function must be called at most once.
+     * <b>Thread safety</b>: this method can be called from any thread at any time.
+     * @return The time source (clock) of this update loop
+     */
+    public TimeSource getTimeSource() {
+        return timeSource;
+    }
+
+    /**
+     * <b>Thread safety</b>: this method can be called from any thread at any time.
+     * @return The current wait strategy of this update loop
+     */
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    /**
+     * Computes how far the current time is between the (scheduled time of the) last completed update and the next
+     * update, as a fraction of the period. This is useful for render loops that run at a higher frequency than the
+     * update loop: they can interpolate between the state before and after the last update, using this value as
+     * interpolation factor. This makes it possible to use a low update frequency without visible stutter.<br>
+     * <b>Thread safety</b>: this method can be called from any thread at any time.
+     * @return A value between 0 and 1. It will be 0 directly after an update, and 1 when the next update is due (or
+     * overdue). It will be 0 if no update has been completed yet.
+     */
+    public double getInterpolationAlpha() {
+        if (!hasTicked) return 0.0;
+        long currentPeriod = period;
+        if (currentPeriod == 0L) return 1.0;
+
+        double alpha = (timeSource.nanoTime() - lastTickTime) / (double) currentPeriod;
+        return Math.max(0.0, Math.min(1.0, alpha));
+    }
+
+    /**
+     * Computes how much time is left until the next update is scheduled. An update function (or tick listener) can
+     * use this to spend the remaining time of the current period on deferred work, without delaying the next update.
+     * See also <i>BudgetedTaskQueue</i>.<br>
+     * <b>Thread safety</b>: this method must only be called from the update function or a tick listener of this
+     * update loop.
+     * @return The time until the next update is scheduled, in nanoseconds, or 0 if the update loop is behind
+     * schedule
+     */
+    public long getRemainingBudget() {
+        return Math.max(0L, nextScheduledTime - timeSource.nanoTime());
+    }
+
+    /**
+     * Starts this update loop on a new (non-daemon) thread named "UpdateLoop". This function must be called at most
+     * once. Use <b>start(new LoopThreadFactory(...))</b> if you want to configure the thread.
      */
     public void start() {
-        new Thread(this).start();
+        new Thread(this, "UpdateLoop").start();
+    }
+
+    /**
+     * Starts this update loop on a new thread created by {@code threadFactory}. This function must be called at
+     * most once. On Java 21 or later, you can use this to run the update loop on a virtual thread:
+     * {@code loop.start(Thread.ofVirtual().factory())}
+     * @param threadFactory The thread factory that should create the update thread
+     */
+    public void start(ThreadFactory threadFactory) {
+        Thread thread = threadFactory.newThread(this);
+        if (thread == null) throw new IllegalStateException("The thread factory refused to create a thread");
+        thread.start();
+    }
+
+    /**
+     * Submits this update loop to {@code executor}, which will <b>run()</b> it. This function must be called at
+     * most once. Note that the update loop will occupy a thread of the executor until it is stopped, so this is
+     * mostly useful for executors that create a new thread per task, like
+     * {@code Executors.newVirtualThreadPerTaskExecutor()} on Java 21 or later. Use an <i>UpdateScheduler</i> if you
+     * want to share a small number of threads between many update loops.
+     * @param executor The executor that should run this update loop
+     */
+    public void startOn(Executor executor) {
+        executor.execute(this);
     }
 
     /**
@@ -97,16 +482,256 @@ public class UpdateLoop implements Runnable {
      */
     public void stop() {
         shouldContinue = false;
+        wakeUp();
+    }
+
+    /**
+     * Requests an extra update as soon as possible, without waiting until the next scheduled update. This is useful
+     * to react to urgent events. The extra update doesn't change the schedule: the regular updates will still happen
+     * at their scheduled times. When an update is already due, or when this method is called multiple times before
+     * the update loop wakes up, only 1 update will be executed.<br>
+     * Note that the update loop can only wake up when its wait strategy parks the thread: spinning wait strategies
+     * will delay the extra update by up to their spin time. Furthermore, this method has no effect on the members of
+     * an <i>UpdateLoopGroup</i>, and an extra update of the master loop of a group doesn't update any member.<br>
+     * <b>Thread safety</b>: this method can be called from any thread at any time.
+     */
+    public void trigger() {
+        isTriggered = true;
+        wakeUp();
+    }
+
+    /**
+     * Waits until this update loop has terminated, which happens after it was stopped and its last update was
+     * finished (or when its update function threw an exception). For the members of an <i>UpdateLoopGroup</i>, this
+     * happens when the group notices that they were stopped, or when the master loop of the group terminates.<br>
+     * <b>Thread safety</b>: this method can be called from any thread at any time, except from the update function
+     * itself.
+     * @param timeout The maximum time to wait, in nanoseconds
+     * @return True if this update loop has terminated, false if the timeout elapsed before it terminated
+     * @throws InterruptedException If the current thread is interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout) throws InterruptedException {
+        return termination.await(timeout, TimeUnit.NANOSECONDS);
+    }
+
+    private void wakeUp() {
+        // When this is called from the update function, the update loop isn't waiting, and unparking the current
+        // thread would just leave a stale permit behind
+        Thread thread = waitingThread;
+        if (thread != null && thread != Thread.currentThread()) LockSupport.unpark(thread);
+        UpdateScheduler.Task task = schedulerTask;
+        if (task != null) task.reschedule();
+    }
+
+    void markTerminated() {
+        termination.countDown();
+        Runnable hook = terminationHook;
+        if (hook != null) hook.run();
+    }
+
+    void markStarted() {
+        if (didStart) throw new IllegalStateException("This update loop has already started");
+        didStart = true;
+        changePeriod(period);
+    }
+
+    private long invokeUpdateFunction(long numTicks) {
+        if (batchUpdateFunction != null) batchUpdateFunction.update(this, numTicks);
+        else updateFunction.accept(this);
+        return numTicks;
+    }
+
+    private long invokeWatchedUpdateFunction() {
+        Thread currentThread = Thread.currentThread();
+        if (updateThread != currentThread) updateThread = currentThread;
+        long numTicks = batchUpdateFunction != null ? pendingTicks : 1L;
+        if (batchSize != numTicks) batchSize = numTicks;
+
+        long sequence = tickSequence;
+        tickSequence = sequence + 1;
+        try {
+            return invokeUpdateFunction(numTicks);
+        } finally {
+            tickSequence = sequence + 2;
+        }
+    }
+
+    @SuppressWarnings("NonAtomicOperationOnVolatileField")
+    private void update() {
+        long numTicks = batchUpdateFunction != null ? pendingTicks : 1L;
+        numTicks = updateUntil(referenceTime + (referenceCounter + numTicks) * activePeriod);
+        referenceCounter += numTicks;
+        executedTicks += numTicks;
+
+        // When the period was changed during this update, the schedule restarts at the moment of the change, but
+        // this update must count as the first update of the new schedule, or the next update would be due at once
+        if (periodVersion != activePeriodVersion && !isDriftFree) {
+            applyPeriodChange();
+            baseTicks -= 1L;
+            referenceCounter = 1L;
+            publishSchedule();
+        }
+    }
+
+    /**
+     * Runs a scheduled update when {@code sleepTime} is not positive, or an extra (triggered) update otherwise. An
+     * extra update doesn't count towards the schedule.
+     */
+    private void tick(long currentTime, long sleepTime) {
+        isTriggered = false;
+        isExtraTick = sleepTime > 0L;
+        if (sleepTime <= 0L) update();
+        else {
+            long nextTime = scheduledTime;
+            scheduledTime = currentTime;
+            pendingTicks = 1L;
+            updateUntil(nextTime);
+        }
+    }
+
+    /**
+     * @return The number of ticks that were executed
+     */
+    private long updateUntil(long nextTime) {
+        nextScheduledTime = nextTime;
+        TickListener[] listeners = tickListeners;
+        long numTicks;
+        long tickTime;
+        if (listeners.length == 0) {
+            numTicks = invokeWatchedUpdateFunction();
+            tickTime = getLastTickTime(numTicks);
+        } else {
+            TimeSource clock = timeSource;
+            long startTime = clock.nanoTime();
+            numTicks = invokeWatchedUpdateFunction();
+            long endTime = clock.nanoTime();
+
+            tickTime = getLastTickTime(numTicks);
+            for (TickListener listener : listeners) {
+                listener.onTick(this, tickTime, startTime, endTime, droppedBacklog);
+            }
+        }
+        // Avoid needless writes, since this is done after every tick
+        if (droppedBacklog != 0L) droppedBacklog = 0L;
+        lastTickTime = tickTime;
+        if (!hasTicked) hasTicked = true;
+        return numTicks;
+    }
+
+    /**
+     * @return The scheduled time of the last tick of a batch of {@code numTicks} ticks that started at
+     * {@code scheduledTime}
+     */
+    private long getLastTickTime(long numTicks) {
+        return scheduledTime + (numTicks - 1L) * activePeriod;
+    }
+
+    /**
+     * Runs the update function once on behalf of an <i>UpdateLoopGroup</i>, which determines the schedule.
+     * @param groupPeriod The period of this update loop according to the group, which is derived from the period of
+     *                    the master loop
+     * @return False if this update loop was stopped, in which case the update function was <b>not</b> called
+     */
+    boolean updateFromGroup(long groupScheduledTime, long groupNextScheduledTime, long groupPeriod) {
+        if (!shouldContinue) return false;
+        if (period != groupPeriod) period = groupPeriod;
+        scheduledTime = groupScheduledTime;
+        pendingTicks = 1L;
+        updateUntil(groupNextScheduledTime);
+        //noinspection NonAtomicOperationOnVolatileField
+        executedTicks += 1L;
+        return true;
+    }
+
+    /**
+     * @return A counter that is incremented right before and right after each call to the update function, so it is
+     * odd while the update function is running
+     */
+    long getTickSequence() {
+        return tickSequence;
+    }
+
+    /**
+     * @return The thread that is running (or last ran) the update function, or null if it hasn't been called yet
+     */
+    Thread getUpdateThread() {
+        return updateThread;
+    }
+
+    /**
+     * @return The time at which the current update was scheduled. This must only be called from the update function.
+     */
+    long getCurrentScheduledTime() {
+        return scheduledTime;
+    }
+
+    /**
+     * @return The time at which the next update is scheduled. This must only be called from the update function.
+     */
+    long getNextScheduledTime() {
+        return nextScheduledTime;
+    }
+
+    /**
+     * @return True if the current update is an extra update (see <b>trigger()</b>) rather than a scheduled update.
+     * This must only be called from the update function.
+     */
+    boolean isExtraTick() {
+        return isExtraTick;
+    }
+
+    /**
+     * Gets the number of ticks that are executed by the current (or last) call to the update function. This is
+     * always 1, unless this update loop is in batched catch-up mode (see <i>BatchUpdateFunction</i>). Tick listeners
+     * need this to distinguish a batch of N ticks from 1 slow tick: the duration of a batch should be compared
+     * against N periods.<br>
+     * <b>Thread safety</b>: this method can be called from any thread at any time. When it is called from a tick
+     * listener, it returns the number of ticks that were executed by the call that the listener is notified about.
+     * @return The number of ticks that are executed by the current (or last) call to the update function
+     */
+    public long getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Runs the update function if it is due at {@code currentTime}. This is used by the <i>UpdateScheduler</i>.
+     * @return The time at which this method should be called again, or -1 if this update loop was stopped
+     */
+    long step(long currentTime) {
+        if (!shouldContinue) return -1L;
+
+        long sleepTime = determineSleepTime(currentTime);
+        if (sleepTime > 0L && !isTriggered) return currentTime + sleepTime;
+
+        tick(currentTime, sleepTime);
+        if (!shouldContinue) return -1L;
+
+        currentTime = timeSource.nanoTime();
+        sleepTime = determineSleepTime(currentTime);
+        if (isTriggered) return currentTime;
+        return currentTime + Math.max(0L, sleepTime);
     }
 
     private long determineSleepTime(long currentTime) {
-        Reference currentReference = reference;
-        long nextUpdateAt = currentReference.time + currentReference.counter * period;
+        applyPeriodChange();
+        long nextUpdateAt = referenceTime + referenceCounter * activePeriod;
         long nextSleepTime = nextUpdateAt - currentTime;
 
-        if (-nextSleepTime > maximumBacklog) currentReference.time += -nextSleepTime - maximumBacklog;
+        if (-nextSleepTime > maximumBacklog && !isDriftFree) {
+            long discardedBacklog = -nextSleepTime - maximumBacklog;
+            referenceTime += discardedBacklog;
+            nextUpdateAt += discardedBacklog;
+            droppedBacklog += discardedBacklog;
+            publishSchedule();
+        }
+
+        scheduledTime = nextUpdateAt;
+        if (nextSleepTime > 0L || activePeriod == 0L) pendingTicks = 1L;
 
-        return nextSleepTime / 1000_000L;
+        // In drift-free mode, the backlog can exceed the maximum backlog, but the batch size is still bounded by it.
+        // The remaining ticks stay owed, and will be passed in the next batch.
+        else pendingTicks = 1L + Math.min(currentTime - nextUpdateAt, maximumBacklog) / activePeriod;
+        return nextSleepTime;
     }
 
     /**
@@ -115,29 +740,24 @@ public class UpdateLoop implements Runnable {
      */
     @Override
     public void run() {
-        if (didStart) throw new IllegalStateException("This update loop has already started");
-        didStart = true;
-        reference = new Reference();
-
-        outerLoop:
-        while (shouldContinue) {
-            long sleepTime;
-            do {
-                sleepTime = determineSleepTime(System.nanoTime());
-                if (sleepTime > 0L) {
+        markStarted();
+        waitingThread = Thread.currentThread();
+        try {
+            TimeSource clock = timeSource;
+            while (shouldContinue) {
+                long currentTime = clock.nanoTime();
+                long sleepTime = determineSleepTime(currentTime);
+                if (sleepTime > 0L && !isTriggered) {
                     try {
-                        //noinspection BusyWait
-                        Thread.sleep(sleepTime);
+                        waitStrategy.waitFor(sleepTime);
                     } catch (InterruptedException interrupted) {
-                        continue outerLoop;
+                        // Just check whether the update loop should continue, and how long it should wait
                     }
-                }
-            } while (sleepTime > 0L);
-
-            if (shouldContinue) {
-                updateFunction.accept(this);
-                reference.counter += 1;
+                } else if (shouldContinue) tick(currentTime, sleepTime);
             }
+        } finally {
+            waitingThread = null;
+            markTerminated();
         }
     }
 }
@@ -0,0 +1,173 @@
+package com.github.knokko.update;
+
+/**
+ * An <i>UpdateLoopGroup</i> runs multiple <i>UpdateLoop</i>s on a shared clock and a single thread. The group has a
+ * <i>master loop</i> with a base period, and each member loop is updated once every {@code ratio} master ticks, with
+ * an offset of {@code phase} master ticks. For instance, with a base period of 1/60 second:
+ * <ul>
+ *     <li>a physics loop with ratio 1 would be updated 60 times per second</li>
+ *     <li>a network loop with ratio 2 would be updated 30 times per second</li>
+ *     <li>an AI loop with ratio 6 and phase 1 would be updated 10 times per second, but never during the same master
+ *     tick as the network loop</li>
+ * </ul>
+ * Since all member loops are driven by the same master tick, they won't drift relative to each other, and the thread
+ * only wakes up once per master tick (rather than once per update of each member). Usage:
+ * <ul>
+ *     <li>Create an <i>UpdateLoopGroup</i> with the desired base period</li>
+ *     <li>Add the member loops using <b>add(loop, ratio, phase)</b>. Don't start them yourself.</li>
+ *     <li>Start the group using <b>start()</b>, or start <b>getMasterLoop()</b> in any other way (e.g. using an
+ *     <i>UpdateScheduler</i>)</li>
+ * </ul>
+ * The period of each member loop is kept equal to {@code ratio} times the period of the master loop: it is updated
+ * before each update of the member loop, so <b>getPeriod()</b> of a member loop reflects changes to the base period.
+ * Changing the period of a member loop has no effect on its schedule, and will be overwritten at its next update.
+ * The time source of each member loop is set to the time source of the master loop, so the time source of the
+ * master loop should be changed before adding members.
+ * The period and maximum backlog of the group can be changed using the master loop. When a member loop is stopped,
+ * it will be removed from the group. Stopping the master loop stops the whole group: when the master loop terminates
+ * (also when its update function throws an exception), all member loops are terminated as well, so their
+ * <b>awaitTermination</b> returns.
+ */
+public class UpdateLoopGroup {
+
+    private final UpdateLoop masterLoop;
+    private volatile Member[] members = new Member[0];
+    private boolean isTerminated;
+
+    /**
+     * @param basePeriod The period of the master loop, in nanoseconds
+     * @param maximumBacklog The maximum backlog of the master loop, in nanoseconds
+     */
+    public UpdateLoopGroup(long basePeriod, long maximumBacklog) {
+        this.masterLoop = new UpdateLoop(this::masterTick, basePeriod, maximumBacklog);
+        this.masterLoop.terminationHook = this::terminateMembers;
+    }
+
+    /**
+     * Constructs a group whose master loop has a maximum backlog of 500 milliseconds.
+     * @param basePeriod The period of the master loop, in nanoseconds
+     */
+    public UpdateLoopGroup(long basePeriod) {
+        this(basePeriod, 500_000_000L);
+    }
+
+    /**
+     * Adds a member loop to this group. The member loop must not have been started, and it must not be started by
+     * anything other than this group. When the master loop has already terminated, the member loop is terminated
+     * immediately.<br>
+     * <b>Thread safety</b>: this method can be called from any thread at any time, even while the group is running.
+     * @param loop The member loop
+     * @param ratio The member loop will be updated once every {@code ratio} master ticks
+     * @param phase The member loop will be updated during the master ticks whose index modulo {@code ratio} is
+     *              {@code phase}. It must be smaller than {@code ratio}.
+     */
+    public synchronized void add(UpdateLoop loop, int ratio, int phase) {
+        if (ratio <= 0 || phase < 0 || phase >= ratio) throw new IllegalArgumentException();
+        loop.setTimeSource(masterLoop.getTimeSource());
+        loop.markStarted();
+        loop.setPeriod(masterLoop.getPeriod() * ratio);
+        if (isTerminated) {
+            loop.markTerminated();
+            return;
+        }
+
+        Member[] oldMembers = members;
+        Member[] newMembers = new Member[oldMembers.length + 1];
+        System.arraycopy(oldMembers, 0, newMembers, 0, oldMembers.length);
+        newMembers[oldMembers.length] = new Member(loop, ratio, phase);
+        members = newMembers;
+    }
+
+    private synchronized void removeStoppedMembers() {
+        Member[] oldMembers = members;
+        int numRemaining = 0;
+        for (Member member : oldMembers) {
+            if (!member.isStopped) numRemaining += 1;
+        }
+
+        Member[] newMembers = new Member[numRemaining];
+        int index = 0;
+        for (Member member : oldMembers) {
+            if (!member.isStopped) newMembers[index++] = member;
+        }
+        members = newMembers;
+    }
+
+    /**
+     * Terminates all members when the master loop terminates, since they won't be updated anymore
+     */
+    private synchronized void terminateMembers() {
+        if (isTerminated) return;
+        isTerminated = true;
+        Member[] oldMembers = members;
+        members = new Member[0];
+        for (Member member : oldMembers) member.loop.markTerminated();
+    }
+
+    private void masterTick(UpdateLoop master) {
+        // Extra (triggered) master ticks must not update any member, since that would break their ratio
+        if (master.isExtraTick()) return;
+
+        // The executed ticks don't include the current tick yet, so this is the index of the current master tick
+        long tick = master.getExecutedTicks();
+        long scheduledTime = master.getCurrentScheduledTime();
+        long nextScheduledTime = master.getNextScheduledTime();
+        long basePeriod = master.getPeriod();
+
+        boolean removeMembers = false;
+        for (Member member : members) {
+            if (tick % member.ratio == member.phase) {
+                if (!member.loop.updateFromGroup(scheduledTime, nextScheduledTime, basePeriod * member.ratio)) {
+                    member.isStopped = true;
+                    member.loop.markTerminated();
+                    removeMembers = true;
+                }
+            }
+        }
+        if (removeMembers) removeStoppedMembers();
+    }
+
+    /**
+     * Starts the master loop on a new thread. This function must be called at most once.
+     */
+    public void start() {
+        masterLoop.start();
+    }
+
+    /**
+     * Stops the master loop, and therefore the whole group. The member loops will not be updated anymore.<br>
+     * <b>Thread safety</b>: this method can be called from any thread at any time.
+     */
+    public void stop() {
+        masterLoop.stop();
+    }
+
+    /**
+     * @return The master loop of this group, which can be used to change the base period, or to start the group in
+     * a different way
+     */
+    public UpdateLoop getMasterLoop() {
+        return masterLoop;
+    }
+
+    /**
+     * <b>Thread safety</b>: this method can be called from any thread at any time.
+     * @return The number of member loops that have not been stopped (as far as the master loop knows)
+     */
+    public int getNumMembers() {
+        return members.length;
+    }
+
+    private static class Member {
+
+        final UpdateLoop loop;
+        final int ratio, phase;
+        boolean isStopped;
+
+        Member(UpdateLoop loop, int ratio, int phase) {
+            this.loop = loop;
+            this.ratio = ratio;
+            this.phase = phase;
+        }
+    }
+}
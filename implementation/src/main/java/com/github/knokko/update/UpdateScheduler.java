@@ -0,0 +1,331 @@
+package com.github.knokko.update;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An <i>UpdateScheduler</i> can run many <i>UpdateLoop</i>s on a small number of worker threads, rather than
+ * using 1 thread per update loop. This is useful when you have many update loops that spend most of their time
+ * waiting. Usage:
+ * <ul>
+ *     <li>Create an <i>UpdateScheduler</i> with the desired number of worker threads</li>
+ *     <li>Call its <b>schedule(loop)</b> method for each update loop, instead of <b>loop.start()</b></li>
+ *     <li>Call its <b>shutdown()</b> method when you no longer need it</li>
+ * </ul>
+ * The period and maximum backlog of each update loop are respected in the same way as when the update loop runs
+ * on its own thread. Furthermore, <b>setPeriod</b> and <b>stop</b> will take effect immediately, even when the
+ * update loop is waiting for its next update.<br>
+ * Note that a scheduled update loop will never be updated by 2 worker threads at the same time, but subsequent
+ * updates may happen on different worker threads. When an update function throws an exception, its update loop will
+ * be stopped, and the exception will be passed to the uncaught exception handler of the worker thread.
+ */
+public class UpdateScheduler {
+
+    private final TaskHeap queue = new TaskHeap();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Thread[] workers;
+
+    private Thread leader;
+    private long taskCounter;
+    private boolean isShutdown;
+
+    /**
+     * Constructs and starts an <i>UpdateScheduler</i> with {@code numWorkers} worker threads.
+     * @param numWorkers The number of worker threads. The scheduler can run at most {@code numWorkers} update
+     *                   functions at the same time.
+     */
+    public UpdateScheduler(int numWorkers) {
+        if (numWorkers <= 0) throw new IllegalArgumentException();
+        this.workers = new Thread[numWorkers];
+        for (int index = 0; index < numWorkers; index++) {
+            workers[index] = new Thread(this::work, "UpdateScheduler-worker-" + index);
+            workers[index].start();
+        }
+    }
+
+    /**
+     * Starts running {@code loop} on the worker threads of this scheduler. This should be used <i>instead of</i>
+     * <b>loop.start()</b> or <b>loop.run()</b>: an update loop can only be started once.<br>
+     * <b>Thread safety</b>: this method can be called from any thread at any time.
+     * @param loop The update loop to be scheduled
+     */
+    public void schedule(UpdateLoop loop) {
+        if (loop.getTimeSource() != TimeSource.SYSTEM) {
+            throw new IllegalArgumentException("The scheduler only supports update loops with the system time source");
+        }
+        Task task = new Task(loop);
+
+        lock.lock();
+        try {
+            // Check this before marking the loop as started, so that it can still be started elsewhere
+            if (isShutdown) throw new IllegalStateException("This scheduler has been shut down");
+            loop.markStarted();
+            loop.schedulerTask = task;
+            task.deadline = System.nanoTime();
+            enqueue(task);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the worker threads of this scheduler. The update functions that are currently running will be finished,
+     * but no new updates will be started. This method does <b>not</b> wait until the worker threads are finished.
+     * <br>
+     * <b>Thread safety</b>: this method can be called from any thread at any time.
+     */
+    public void shutdown() {
+        lock.lock();
+        try {
+            isShutdown = true;
+            for (Task task : queue.clear()) {
+                task.loop.schedulerTask = null;
+                task.loop.markTerminated();
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * <b>Thread safety</b>: this method can be called from any thread at any time.
+     * @return The number of update loops that are currently scheduled, excluding the ones whose update function is
+     * currently running
+     */
+    public int getNumWaitingLoops() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(Task task) {
+        task.sequenceNumber = taskCounter++;
+        if (task.heapIndex == -1) queue.add(task);
+        else queue.update(task);
+        if (queue.peek() == task) {
+            leader = null;
+            available.signal();
+        }
+    }
+
+    private Task takeTask() throws InterruptedException {
+        lock.lock();
+        try {
+            while (!isShutdown) {
+                Task first = queue.peek();
+                if (first == null) {
+                    available.await();
+                    continue;
+                }
+
+                long delay = first.deadline - System.nanoTime();
+                if (delay <= 0L) {
+                    queue.poll();
+                    return first;
+                }
+
+                if (leader != null) available.await();
+                else {
+                    Thread currentThread = Thread.currentThread();
+                    leader = currentThread;
+                    try {
+                        available.awaitNanos(delay);
+                    } finally {
+                        if (leader == currentThread) leader = null;
+                    }
+                }
+            }
+            return null;
+        } finally {
+            if (leader == null && !queue.isEmpty()) available.signal();
+            lock.unlock();
+        }
+    }
+
+    private void work() {
+        while (true) {
+            Task task;
+            try {
+                task = takeTask();
+            } catch (InterruptedException interrupted) {
+                continue;
+            }
+            if (task == null) return;
+
+            long nextDeadline = -1L;
+            try {
+                nextDeadline = task.loop.step(System.nanoTime());
+            } catch (Throwable failure) {
+                // Like a normal update loop, an update loop whose update function throws will stop, but the worker
+                // thread should survive
+                Thread currentThread = Thread.currentThread();
+                currentThread.getUncaughtExceptionHandler().uncaughtException(currentThread, failure);
+            }
+
+            lock.lock();
+            try {
+                if (nextDeadline != -1L && !isShutdown) {
+                    // When the update loop was stopped, triggered, or got a new period during step(), nextDeadline
+                    // may be outdated, so the loop should be checked again immediately
+                    if (task.wakeRequested) {
+                        task.wakeRequested = false;
+                        nextDeadline = System.nanoTime();
+                    }
+                    task.deadline = nextDeadline;
+                    enqueue(task);
+                } else {
+                    task.loop.schedulerTask = null;
+                    task.loop.markTerminated();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    class Task implements Comparable<Task> {
+
+        final UpdateLoop loop;
+        long deadline;
+        long sequenceNumber;
+
+        /**
+         * The index of this task in the heap of the scheduler, or -1 if it is not queued (because a worker is running
+         * its update loop)
+         */
+        int heapIndex = -1;
+
+        /**
+         * This is set when <b>reschedule</b> is called while a worker is running the update loop, since that worker
+         * may have computed its next deadline before the change
+         */
+        boolean wakeRequested;
+
+        Task(UpdateLoop loop) {
+            this.loop = loop;
+        }
+
+        /**
+         * Makes sure that the worker threads will check the update loop as soon as possible. This is needed when
+         * the period is changed, or when the update loop is stopped.
+         */
+        void reschedule() {
+            lock.lock();
+            try {
+                if (heapIndex != -1) {
+                    deadline = System.nanoTime();
+                    enqueue(this);
+                } else wakeRequested = true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            long difference = deadline - other.deadline;
+            if (difference != 0L) return difference < 0L ? -1 : 1;
+            return Long.compare(sequenceNumber, other.sequenceNumber);
+        }
+    }
+
+    /**
+     * A binary min-heap of tasks, ordered by deadline. Unlike a <i>PriorityQueue</i>, each task stores its own index
+     * in the heap, so that a task whose deadline changed can be moved in O(log n) time, rather than removing it using
+     * a linear search. This class is only used while holding the lock of the scheduler.
+     */
+    private static class TaskHeap {
+
+        private Task[] tasks = new Task[16];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        Task peek() {
+            return size == 0 ? null : tasks[0];
+        }
+
+        void add(Task task) {
+            if (size == tasks.length) tasks = Arrays.copyOf(tasks, 2 * size);
+            size += 1;
+            siftUp(size - 1, task);
+        }
+
+        Task poll() {
+            if (size == 0) return null;
+            Task first = tasks[0];
+            size -= 1;
+            Task last = tasks[size];
+            tasks[size] = null;
+            if (size > 0) siftDown(0, last);
+            first.heapIndex = -1;
+            return first;
+        }
+
+        /**
+         * Restores the heap order after the deadline (or sequence number) of {@code task} was changed
+         */
+        void update(Task task) {
+            int index = task.heapIndex;
+            if (index > 0 && task.compareTo(tasks[(index - 1) / 2]) < 0) siftUp(index, task);
+            else siftDown(index, task);
+        }
+
+        /**
+         * Removes all tasks from this heap
+         * @return The tasks that were in this heap
+         */
+        Task[] clear() {
+            Task[] removed = Arrays.copyOf(tasks, size);
+            for (Task task : removed) task.heapIndex = -1;
+            Arrays.fill(tasks, 0, size, null);
+            size = 0;
+            return removed;
+        }
+
+        private void siftUp(int index, Task task) {
+            while (index > 0) {
+                int parentIndex = (index - 1) / 2;
+                Task parent = tasks[parentIndex];
+                if (task.compareTo(parent) >= 0) break;
+                place(index, parent);
+                index = parentIndex;
+            }
+            place(index, task);
+        }
+
+        private void siftDown(int index, Task task) {
+            int half = size / 2;
+            while (index < half) {
+                int childIndex = 2 * index + 1;
+                Task child = tasks[childIndex];
+                int rightIndex = childIndex + 1;
+                if (rightIndex < size && tasks[rightIndex].compareTo(child) < 0) {
+                    childIndex = rightIndex;
+                    child = tasks[rightIndex];
+                }
+                if (task.compareTo(child) <= 0) break;
+                place(index, child);
+                index = childIndex;
+            }
+            place(index, task);
+        }
+
+        private void place(int index, Task task) {
+            tasks[index] = task;
+            task.heapIndex = index;
+        }
+    }
+}
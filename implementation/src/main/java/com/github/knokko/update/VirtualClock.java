@@ -0,0 +1,54 @@
+package com.github.knokko.update;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A clock whose time only advances when <b>advance</b> is called, or when an <i>UpdateLoop</i> waits for it. It is
+ * both a {@link TimeSource} and a {@link WaitStrategy}: when an update loop uses it (see
+ * <b>UpdateLoop.setTimeSource</b>), waiting for its next update will simply advance the clock, rather than sleeping.
+ * The update loop will thus run as fast as the CPU allows, while the update function still observes the simulated
+ * time. This is useful for replaying recorded sessions, running offline simulations, and testing.<br>
+ * Note that every update loop that waits for a virtual clock advances it, so multiple update loops should not share
+ * the same virtual clock. Use an <i>UpdateLoopGroup</i> if multiple loops need the same virtual clock.<br>
+ * <b>Thread safety</b>: all methods can be called from any thread at any time.
+ */
+public class VirtualClock implements TimeSource, WaitStrategy {
+
+    private final AtomicLong time;
+
+    /**
+     * @param initialTime The initial time of this clock, in nanoseconds
+     */
+    public VirtualClock(long initialTime) {
+        this.time = new AtomicLong(initialTime);
+    }
+
+    /**
+     * Constructs a virtual clock whose initial time is 0.
+     */
+    public VirtualClock() {
+        this(0L);
+    }
+
+    @Override
+    public long nanoTime() {
+        return time.get();
+    }
+
+    /**
+     * Advances the time of this clock by {@code nanoTime} nanoseconds.
+     * @param nanoTime The amount of time to advance, which must be non-negative
+     */
+    public void advance(long nanoTime) {
+        if (nanoTime < 0L) throw new IllegalArgumentException();
+        time.addAndGet(nanoTime);
+    }
+
+    /**
+     * Advances the time of this clock by {@code nanoTime} nanoseconds, without actually waiting.
+     */
+    @Override
+    public void waitFor(long nanoTime) {
+        advance(nanoTime);
+    }
+}
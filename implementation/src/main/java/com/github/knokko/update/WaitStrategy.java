@@ -0,0 +1,73 @@
+package com.github.knokko.update;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Determines how an <i>UpdateLoop</i> waits until its next update. The strategy of an update loop can be changed
+ * using <b>UpdateLoop.setWaitStrategy</b>. The following strategies are available:
+ * <ul>
+ *     <li>{@link #PARK}: uses <b>LockSupport.parkNanos</b>, which is cheap but typically only accurate to a
+ *     millisecond</li>
+ *     <li>{@link #SLEEP}: the default strategy, which is an alias of {@link #PARK}</li>
+ *     <li>{@link #SPIN}: busy-waits, which is very accurate, but keeps a CPU core busy</li>
+ *     <li>{@link #sleepThenSpin(long)}: parks until shortly before the deadline, and spins for the last part</li>
+ *     <li>{@link CalibratedWaitStrategy}: like <b>sleepThenSpin</b>, but it learns how much the OS oversleeps</li>
+ * </ul>
+ * An update loop wakes its thread up using <b>LockSupport.unpark</b> when it is stopped or triggered, or when its
+ * period is changed. Strategies should return early when that happens, so that the update loop can react
+ * immediately.
+ */
+@FunctionalInterface
+public interface WaitStrategy {
+
+    /**
+     * Parks the current thread using <b>LockSupport.parkNanos</b>. Note that this can oversleep by up to a
+     * millisecond (or a full scheduler quantum on some systems).
+     */
+    WaitStrategy PARK = nanoTime -> {
+        LockSupport.parkNanos(nanoTime);
+        if (Thread.interrupted()) throw new InterruptedException();
+    };
+
+    /**
+     * An alias of {@link #PARK}, which is kept for compatibility. This is the default strategy. It used to call
+     * <b>Thread.sleep</b>, but the update loop can't wake up a thread that is inside <b>Thread.sleep</b>.
+     */
+    WaitStrategy SLEEP = PARK;
+
+    /**
+     * Busy-waits until the deadline. This gives the best precision, but it will keep a CPU core busy all the time.
+     * Since spinning can't be woken up, this strategy returns after at most 100 microseconds, after which the update
+     * loop will check whether it needs to wait longer.
+     */
+    WaitStrategy SPIN = nanoTime -> SpinWait.spinUntil(System.nanoTime() + Math.min(nanoTime, 100_000L));
+
+    /**
+     * Waits for {@code nanoTime} nanoseconds, or less. The <i>UpdateLoop</i> will check whether it needs to wait
+     * longer after this method returns, so it is allowed to return early (but it should avoid doing so).
+     * @param nanoTime The time to wait, in nanoseconds. This is always positive.
+     * @throws InterruptedException If the current thread is interrupted while waiting
+     */
+    void waitFor(long nanoTime) throws InterruptedException;
+
+    /**
+     * Creates a strategy that parks the current thread until {@code spinTime} nanoseconds before the deadline, and
+     * spins (using <b>Thread.onSpinWait</b> when available) during the last {@code spinTime} nanoseconds.
+     * @param spinTime The time to spin before each deadline, in nanoseconds. Something like 1 or 2 milliseconds
+     *                 is typically enough to absorb the oversleeping of the OS.
+     */
+    static WaitStrategy sleepThenSpin(long spinTime) {
+        if (spinTime < 0) throw new IllegalArgumentException();
+        return nanoTime -> {
+            long deadline = System.nanoTime() + nanoTime;
+            if (nanoTime > spinTime) {
+                LockSupport.parkNanos(nanoTime - spinTime);
+                if (Thread.interrupted()) throw new InterruptedException();
+
+                // Return when the update loop was woken up, rather than spinning until the deadline
+                if (deadline - System.nanoTime() > spinTime) return;
+            }
+            SpinWait.spinUntil(deadline);
+        };
+    }
+}
@@ -0,0 +1,160 @@
+package com.github.knokko.update;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestAdaptivePeriodController {
+
+    private static void tick(AdaptivePeriodController controller, UpdateLoop loop, int amount, long duration) {
+        for (int counter = 0; counter < amount; counter++) controller.onTick(loop, 0, 0, duration, 0);
+    }
+
+    @Test
+    public void testStretchAndRecover() {
+        UpdateLoop loop = new UpdateLoop(updateLoop -> {}, 1000);
+        List<Long> newPeriods = new ArrayList<>();
+        AdaptivePeriodController controller = new AdaptivePeriodController(
+                1000, 3000, 5, (updateLoop, loadFactor, newPeriod) -> newPeriods.add(newPeriod)
+        );
+
+        // Light load should not change anything
+        tick(controller, loop, 100, 500);
+        assertEquals(1000, loop.getPeriod());
+        assertFalse(controller.isOverloaded());
+        assertEquals(0.5, controller.getLoadFactor(), 0.01);
+        assertTrue(newPeriods.isEmpty());
+
+        // A single spike should not change anything either
+        tick(controller, loop, 1, 10_000);
+        tick(controller, loop, 100, 500);
+        assertEquals(1000, loop.getPeriod());
+        assertTrue(newPeriods.isEmpty());
+
+        // Sustained overload should stretch the period
+        tick(controller, loop, 100, 2000);
+        assertTrue(controller.isOverloaded());
+        assertEquals(2.0, controller.getLoadFactor(), 0.01);
+        assertEquals(2200, loop.getPeriod(), 220);
+        assertEquals(loop.getPeriod(), controller.getCurrentPeriod());
+        assertFalse(newPeriods.isEmpty());
+
+        // But not beyond the maximum period
+        tick(controller, loop, 100, 5000);
+        assertEquals(3000, loop.getPeriod());
+        assertTrue(controller.isOverloaded());
+
+        // And it should recover when the load decreases
+        tick(controller, loop, 100, 800);
+        assertEquals(1000, loop.getPeriod());
+        assertFalse(controller.isOverloaded());
+        assertEquals(1000, (long) newPeriods.get(newPeriods.size() - 1));
+    }
+
+    @Test
+    public void testListenerOnly() {
+        UpdateLoop loop = new UpdateLoop(updateLoop -> {}, 1000);
+        List<Double> loadFactors = new ArrayList<>();
+        AdaptivePeriodController controller = new AdaptivePeriodController(
+                1000, 1000, 5, (updateLoop, loadFactor, newPeriod) -> {
+                    assertEquals(1000, newPeriod);
+                    loadFactors.add(loadFactor);
+                }
+        );
+
+        tick(controller, loop, 100, 3000);
+        assertEquals(1000, loop.getPeriod());
+        assertTrue(controller.isOverloaded());
+        assertEquals(1, loadFactors.size());
+        assertTrue(loadFactors.get(0) > 1.5);
+
+        tick(controller, loop, 100, 100);
+        assertFalse(controller.isOverloaded());
+        assertEquals(2, loadFactors.size());
+        assertTrue(loadFactors.get(1) < 1.0);
+    }
+
+    @Test
+    public void testBatchedCatchUp() {
+        VirtualClock clock = new VirtualClock();
+        List<Long> newPeriods = new ArrayList<>();
+        AdaptivePeriodController controller = new AdaptivePeriodController(
+                1_000_000L, 4_000_000L, 3, (updateLoop, loadFactor, newPeriod) -> newPeriods.add(newPeriod)
+        );
+        AtomicLong numCalls = new AtomicLong(0);
+        AtomicLong maxBatch = new AtomicLong(0);
+        UpdateLoop updateLoop = new UpdateLoop((loop, ticks) -> {
+            maxBatch.accumulateAndGet(ticks, Math::max);
+
+            // Every 10th call has a hiccup of 20ms, after which the update loop catches up using batches that take
+            // only 0.5ms per tick, so the update loop is never overloaded
+            if (numCalls.incrementAndGet() % 10 == 1) clock.advance(20_000_000L);
+            else clock.advance(ticks * 500_000L);
+            if (numCalls.get() == 200) loop.stop();
+        }, 1_000_000L, 1_000_000_000L);
+        updateLoop.setTimeSource(clock);
+        updateLoop.addTickListener(controller);
+        updateLoop.run();
+
+        assertTrue(maxBatch.get() >= 10, "Max batch is " + maxBatch.get());
+        assertEquals(1_000_000L, updateLoop.getPeriod());
+        assertFalse(controller.isOverloaded());
+        assertTrue(newPeriods.isEmpty());
+    }
+
+    @Test
+    public void testTickSpacingAfterAdjustment() {
+        VirtualClock clock = new VirtualClock();
+        List<Long> startTimes = new ArrayList<>();
+        List<long[]> adjustments = new ArrayList<>();
+        AdaptivePeriodController controller = new AdaptivePeriodController(
+                1_000_000L, 4_000_000L, 3, (updateLoop, loadFactor, newPeriod) -> adjustments.add(
+                        new long[] { startTimes.size(), clock.nanoTime(), newPeriod }
+                )
+        );
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            // Every update takes 2ms, which is twice the target period
+            startTimes.add(clock.nanoTime());
+            clock.advance(2_000_000L);
+            if (startTimes.size() == 20) loop.stop();
+        }, 1_000_000L);
+        updateLoop.setTimeSource(clock);
+        updateLoop.addTickListener(controller);
+        updateLoop.run();
+
+        assertEquals(1, adjustments.size());
+        int nextTick = (int) adjustments.get(0)[0];
+        long adjustTime = adjustments.get(0)[1];
+        long newPeriod = adjustments.get(0)[2];
+        assertEquals(2_200_000L, newPeriod);
+
+        // The first update after the adjustment must happen 1 new period after the adjustment, not immediately
+        assertEquals(adjustTime + newPeriod, (long) startTimes.get(nextTick));
+        for (int index = nextTick + 1; index < startTimes.size(); index++) {
+            assertEquals(newPeriod, startTimes.get(index) - startTimes.get(index - 1));
+        }
+    }
+
+    @Test
+    public void testWithUpdateLoop() throws InterruptedException {
+        AdaptivePeriodController controller = new AdaptivePeriodController(10_000_000L, null);
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException shouldNotHappen) {
+                throw new RuntimeException(shouldNotHappen);
+            }
+        }, 10_000_000L);
+        updateLoop.addTickListener(controller);
+        updateLoop.start();
+
+        Thread.sleep(1000);
+        updateLoop.stop();
+        assertTrue(controller.isOverloaded());
+        assertTrue(updateLoop.getPeriod() >= 20_000_000L, "Period is " + updateLoop.getPeriod());
+    }
+}
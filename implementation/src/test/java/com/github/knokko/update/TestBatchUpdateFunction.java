@@ -0,0 +1,102 @@
+package com.github.knokko.update;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.Math.abs;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestBatchUpdateFunction {
+
+    @Test
+    public void testWithoutBacklog() throws InterruptedException {
+        AtomicLong numCalls = new AtomicLong(0);
+        AtomicLong numTicks = new AtomicLong(0);
+        UpdateLoop updateLoop = new UpdateLoop((loop, ticks) -> {
+            numCalls.incrementAndGet();
+            numTicks.addAndGet(ticks);
+        }, 10_000_000L);
+        updateLoop.start();
+
+        Thread.sleep(500);
+        updateLoop.stop();
+
+        // When the update function is fast, every batch should contain only 1 tick (or rarely 2 due to oversleeping)
+        assertTrue(numTicks.get() - numCalls.get() < 5);
+        if (abs(numTicks.get() - 50) > 10) assertEquals(50, numTicks.get());
+    }
+
+    @Test
+    public void testCatchUp() throws InterruptedException {
+        AtomicLong numCalls = new AtomicLong(0);
+        AtomicLong numTicks = new AtomicLong(0);
+        AtomicLong maxBatch = new AtomicLong(0);
+        UpdateLoop updateLoop = new UpdateLoop((loop, ticks) -> {
+            numCalls.incrementAndGet();
+            numTicks.addAndGet(ticks);
+            maxBatch.accumulateAndGet(ticks, Math::max);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException shouldNotHappen) {
+                throw new RuntimeException(shouldNotHappen);
+            }
+        }, 1_000_000L, 1_000_000_000L);
+
+        long startTime = System.nanoTime();
+        updateLoop.start();
+        Thread.sleep(1000);
+        updateLoop.stop();
+        long passedTime = System.nanoTime() - startTime;
+
+        // Every call takes 50ms, but the update loop should still process 1 tick per millisecond
+        assertTrue(numCalls.get() <= 21);
+        assertTrue(maxBatch.get() >= 40);
+        long expectedTicks = passedTime / 1_000_000L;
+        if (abs(numTicks.get() - expectedTicks) > 100) assertEquals(expectedTicks, numTicks.get());
+    }
+
+    @Test
+    public void testMaximumBacklog() throws InterruptedException {
+        AtomicLong maxBatch = new AtomicLong(0);
+        UpdateLoop updateLoop = new UpdateLoop((loop, ticks) -> {
+            maxBatch.accumulateAndGet(ticks, Math::max);
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException shouldNotHappen) {
+                throw new RuntimeException(shouldNotHappen);
+            }
+        }, 1_000_000L, 20_000_000L);
+        updateLoop.start();
+
+        Thread.sleep(500);
+        updateLoop.stop();
+        assertEquals(21, maxBatch.get());
+    }
+
+    @Test
+    public void testListenersGetLastTickOfBatch() {
+        VirtualClock clock = new VirtualClock();
+        List<Long> batchSizes = new ArrayList<>();
+        List<Long> scheduledTimes = new ArrayList<>();
+        UpdateLoop updateLoop = new UpdateLoop((loop, ticks) -> {
+            batchSizes.add(ticks);
+
+            // Simulate a first update that takes 10ms
+            if (batchSizes.size() == 1) clock.advance(10_000_000L);
+            if (batchSizes.size() == 3) loop.stop();
+        }, 1_000_000L, 1_000_000_000L);
+        updateLoop.setTimeSource(clock);
+        updateLoop.addTickListener((loop, scheduledTime, startTime, endTime, droppedBacklog) ->
+                scheduledTimes.add(scheduledTime)
+        );
+        updateLoop.run();
+
+        // The second batch contains the ticks scheduled at 1ms, 2ms, ..., 10ms
+        assertEquals(Arrays.asList(1L, 10L, 1L), batchSizes);
+        assertEquals(Arrays.asList(0L, 10_000_000L, 11_000_000L), scheduledTimes);
+    }
+}
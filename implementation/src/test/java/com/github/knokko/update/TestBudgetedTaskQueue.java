@@ -0,0 +1,145 @@
+package com.github.knokko.update;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestBudgetedTaskQueue {
+
+    @Test
+    public void testRemainingBudget() {
+        VirtualClock clock = new VirtualClock();
+        List<Long> budgets = new ArrayList<>();
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            clock.advance(3_000_000L);
+            budgets.add(loop.getRemainingBudget());
+            if (budgets.size() == 5) loop.stop();
+        }, 10_000_000L);
+        updateLoop.setTimeSource(clock);
+        updateLoop.run();
+
+        for (long budget : budgets) assertEquals(7_000_000L, budget);
+    }
+
+    @Test
+    public void testStepsWithinBudget() {
+        VirtualClock clock = new VirtualClock();
+        BudgetedTaskQueue taskQueue = new BudgetedTaskQueue(2_000_000L);
+
+        AtomicInteger firstTaskSteps = new AtomicInteger(0);
+        AtomicInteger secondTaskSteps = new AtomicInteger(0);
+        taskQueue.submit(() -> {
+            clock.advance(1_000_000L);
+            return firstTaskSteps.incrementAndGet() == 12;
+        });
+        taskQueue.submit(() -> {
+            clock.advance(1_000_000L);
+            return secondTaskSteps.incrementAndGet() == 3;
+        });
+        assertEquals(2, taskQueue.getNumPendingTasks());
+
+        List<Integer> stepsPerTick = new ArrayList<>();
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            clock.advance(3_000_000L);
+            stepsPerTick.add(taskQueue.run(loop));
+            if (stepsPerTick.size() == 5) loop.stop();
+        }, 10_000_000L);
+        updateLoop.setTimeSource(clock);
+        TickMetrics metrics = new TickMetrics();
+        updateLoop.addTickListener(metrics);
+        updateLoop.run();
+
+        // Each tick leaves 7ms, and the queue only starts a step when more than 2ms margin + 1ms for the step is left,
+        // so it can do 4 steps per tick
+        assertEquals(Arrays.asList(4, 4, 4, 3, 0), stepsPerTick);
+        assertEquals(12, firstTaskSteps.get());
+        assertEquals(3, secondTaskSteps.get());
+        assertEquals(0, taskQueue.getNumPendingTasks());
+
+        // The tasks should never have delayed the next tick
+        assertEquals(0, metrics.getMaxLateness());
+    }
+
+    @Test
+    public void testBehindSchedule() {
+        VirtualClock clock = new VirtualClock();
+        BudgetedTaskQueue taskQueue = new BudgetedTaskQueue(0L);
+        AtomicInteger taskSteps = new AtomicInteger(0);
+        taskQueue.submit(() -> taskSteps.incrementAndGet() == 1000);
+
+        AtomicInteger tickCounter = new AtomicInteger(0);
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            clock.advance(15_000_000L);
+            if (tickCounter.incrementAndGet() == 10) loop.stop();
+        }, 10_000_000L);
+        updateLoop.setTimeSource(clock);
+        updateLoop.addTickListener(taskQueue);
+        updateLoop.run();
+
+        assertEquals(10, tickCounter.get());
+        assertEquals(0, taskSteps.get());
+        assertEquals(1, taskQueue.getNumPendingTasks());
+    }
+
+    @Test
+    public void testEstimateWhenBehindSchedule() {
+        VirtualClock clock = new VirtualClock();
+        BudgetedTaskQueue taskQueue = new BudgetedTaskQueue(1_000_000L);
+        taskQueue.submit(() -> {
+            clock.advance(6_500_000L);
+            return false;
+        });
+
+        List<Integer> stepsPerRun = new ArrayList<>();
+        AtomicInteger tickCounter = new AtomicInteger(0);
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            if (tickCounter.incrementAndGet() == 1) {
+                // With 7ms of budget, there is time for exactly 1 step of 6.5ms
+                clock.advance(3_000_000L);
+                stepsPerRun.add(taskQueue.run(loop));
+
+                // Without any budget, the queue should not shrink its estimate of the step duration
+                clock.advance(2_500_000L);
+                for (int counter = 0; counter < 20; counter++) stepsPerRun.add(taskQueue.run(loop));
+            } else {
+                // The second tick is scheduled until 20ms, and starts at 12ms, so 1ms + 6.5ms doesn't fit in 7ms
+                clock.advance(1_000_000L);
+                stepsPerRun.add(taskQueue.run(loop));
+                loop.stop();
+            }
+        }, 10_000_000L);
+        updateLoop.setTimeSource(clock);
+        updateLoop.run();
+
+        List<Integer> expectedSteps = new ArrayList<>();
+        expectedSteps.add(1);
+        for (int counter = 0; counter < 21; counter++) expectedSteps.add(0);
+        assertEquals(expectedSteps, stepsPerRun);
+    }
+
+    @Test
+    public void testFailingTask() {
+        VirtualClock clock = new VirtualClock();
+        BudgetedTaskQueue taskQueue = new BudgetedTaskQueue(0L);
+        taskQueue.submit(() -> {
+            throw new UnsupportedOperationException("Expected");
+        });
+        taskQueue.submit(() -> true);
+
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {}, 10_000_000L);
+        updateLoop.setTimeSource(clock);
+        updateLoop.addTickListener((loop, scheduledTime, startTime, endTime, droppedBacklog) -> {
+            assertThrows(UnsupportedOperationException.class, () -> taskQueue.run(loop));
+            assertEquals(1, taskQueue.getNumPendingTasks());
+            assertEquals(1, taskQueue.run(loop));
+            loop.stop();
+        });
+        updateLoop.run();
+        assertEquals(0, taskQueue.getNumPendingTasks());
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.knokko.update;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestFrameTimeCounter {
+
+    @Test
+    public void testDetails() {
+        FrameTimeCounter counter = new FrameTimeCounter(5);
+        assertEquals(0, counter.snapshot().getCount());
+        assertEquals(0.0, counter.snapshot().getAverageFps());
+
+        // The first increment only initializes the timestamp
+        counter.increment(1000);
+        assertEquals(0, counter.getNumFrames());
+
+        counter.increment(1100);
+        counter.increment(1300);
+        counter.increment(1400);
+        FrameTimeCounter.Snapshot snapshot = counter.snapshot();
+        assertEquals(3, snapshot.getCount());
+        assertEquals(200, snapshot.getMax());
+        assertEquals(400.0 / 3.0, snapshot.getMean(), 1e-9);
+        assertEquals(100, snapshot.getPercentile(50.0));
+        assertEquals(200, snapshot.getPercentile(100.0));
+
+        // Only the last 5 frame times should be remembered
+        for (int counterValue = 1; counterValue <= 5; counterValue++) counter.increment(1400 + 10 * counterValue);
+        snapshot = counter.snapshot();
+        assertEquals(8, counter.getNumFrames());
+        assertEquals(5, snapshot.getCount());
+        assertEquals(10, snapshot.getMax());
+        assertEquals(10.0, snapshot.getMean(), 1e-9);
+        assertEquals(0.0, snapshot.getVariance(), 1e-9);
+    }
+
+    @Test
+    public void testHitchIsVisible() {
+        long frameTime = 16_666_667L;
+
+        // 60 evenly spaced frames
+        FrameTimeCounter smooth = new FrameTimeCounter(100);
+        for (int frame = 0; frame <= 60; frame++) smooth.increment(frame * frameTime);
+
+        // 60 frames in (almost) the same time, but with 1 hitch of 200ms
+        FrameTimeCounter stuttering = new FrameTimeCounter(100);
+        long time = 0L;
+        long shortFrameTime = (60 * frameTime - 200_000_000L) / 59;
+        stuttering.increment(time);
+        for (int frame = 1; frame <= 60; frame++) {
+            time += frame == 30 ? 200_000_000L : shortFrameTime;
+            stuttering.increment(time);
+        }
+
+        FrameTimeCounter.Snapshot smoothSnapshot = smooth.snapshot();
+        FrameTimeCounter.Snapshot stutteringSnapshot = stuttering.snapshot();
+
+        // The average FPS is nearly the same...
+        assertEquals(60.0, smoothSnapshot.getAverageFps(), 0.01);
+        assertEquals(60.0, stutteringSnapshot.getAverageFps(), 0.1);
+
+        // ... but the 1% lows, maximum frame time, and variance are very different
+        assertEquals(60.0, smoothSnapshot.getOnePercentLowFps(), 0.01);
+        assertEquals(5.0, stutteringSnapshot.getOnePercentLowFps(), 0.01);
+        assertEquals(frameTime, smoothSnapshot.getMax());
+        assertEquals(200_000_000L, stutteringSnapshot.getMax());
+        assertEquals(0.0, smoothSnapshot.getStandardDeviation(), 1.0);
+        assertTrue(stutteringSnapshot.getStandardDeviation() > 20_000_000.0);
+    }
+
+    @Test
+    public void testRealTime() throws InterruptedException {
+        FrameTimeCounter counter = new FrameTimeCounter();
+        UpdateLoop updateLoop = new UpdateLoop(loop -> counter.increment(), 5_000_000L);
+        updateLoop.start();
+        Thread.sleep(300);
+        updateLoop.stop();
+
+        FrameTimeCounter.Snapshot snapshot = counter.snapshot();
+        assertTrue(snapshot.getCount() > 30);
+        assertEquals(200.0, snapshot.getAverageFps(), 40.0);
+        assertTrue(snapshot.toString().startsWith("FrameTimes(count="));
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.knokko.update;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestLatencyHistogram {
+
+    @Test
+    public void testBucketBoundaries() {
+        LatencyHistogram histogram = new LatencyHistogram(3);
+        Random rng = new Random(1234);
+
+        int lastIndex = -1;
+        for (long value = 0; value < 100_000; value++) {
+            int index = histogram.bucketIndex(value);
+            assertTrue(index == lastIndex || index == lastIndex + 1);
+            if (index != lastIndex) assertEquals(value, histogram.lowestValueInBucket(index));
+            lastIndex = index;
+        }
+
+        for (int counter = 0; counter < 100_000; counter++) {
+            long value = rng.nextLong() >>> (1 + rng.nextInt(63));
+            long highest = histogram.highestValueInBucket(histogram.bucketIndex(value));
+            assertTrue(highest >= value);
+            assertTrue(highest - value <= value / 8);
+        }
+
+        assertEquals(Long.MAX_VALUE, histogram.highestValueInBucket(histogram.bucketIndex(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 10_000; value++) histogram.record(1000 * value);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10_000, snapshot.getCount());
+        assertEquals(10_000_000, snapshot.getMax());
+        assertEquals(5_000_500.0, snapshot.getMean(), 0.001);
+        assertEquals(5_000_000.0, snapshot.getValueAtPercentile(50.0), 5_000_000.0 / 32);
+        assertEquals(9_900_000.0, snapshot.getValueAtPercentile(99.0), 9_900_000.0 / 32);
+        assertEquals(9_990_000.0, snapshot.getValueAtPercentile(99.9), 9_990_000.0 / 32);
+        assertEquals(10_000_000, snapshot.getValueAtPercentile(100.0));
+        assertEquals(1000.0, snapshot.getValueAtPercentile(0.0), 1000.0 / 32);
+
+        // snapshot() must not reset the histogram
+        assertEquals(10_000, histogram.snapshot().getCount());
+        assertEquals(10_000, histogram.snapshotAndReset().getCount());
+        assertEquals(0, histogram.snapshot().getCount());
+        assertEquals(0, histogram.snapshot().getValueAtPercentile(99.0));
+    }
+
+    @Test
+    public void testNegativeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(0, histogram.snapshot().getMax());
+        assertEquals(1, histogram.snapshot().getCount());
+    }
+
+    @Test
+    public void testConcurrentSnapshotAndReset() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int numValues = 2_000_000;
+        Thread recorder = new Thread(() -> {
+            for (int value = 0; value < numValues; value++) histogram.record(value % 12345);
+        });
+        recorder.start();
+
+        long totalCount = 0;
+        while (recorder.isAlive()) totalCount += histogram.snapshotAndReset().getCount();
+        recorder.join();
+        totalCount += histogram.snapshotAndReset().getCount();
+
+        assertEquals(numValues, totalCount);
+    }
+
+    @Test
+    public void testInconsistentMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int index = histogram.bucketIndex(1000L);
+        long[] counts = new long[(64 - 5) * 32];
+        counts[histogram.bucketIndex(10L)] = 3L;
+        counts[index] = 1L;
+
+        // This happens when the maximum was reset before a concurrent record() updated it
+        LatencyHistogram.Snapshot snapshot = histogram.new Snapshot(counts.clone(), 1030L, 0L);
+        assertEquals(histogram.highestValueInBucket(index), snapshot.getMax());
+        assertTrue(snapshot.getValueAtPercentile(100.0) >= histogram.lowestValueInBucket(index));
+        assertTrue(snapshot.getValueAtPercentile(100.0) <= snapshot.getMax());
+
+        // This happens when the maximum was updated by a value that was counted in the next snapshot
+        snapshot = histogram.new Snapshot(counts.clone(), 1030L, 5000L);
+        assertEquals(histogram.highestValueInBucket(index), snapshot.getMax());
+
+        // A consistent maximum should be kept exactly
+        snapshot = histogram.new Snapshot(counts.clone(), 1030L, 1000L);
+        assertEquals(1000L, snapshot.getMax());
+        assertEquals(1000L, snapshot.getValueAtPercentile(100.0));
+
+        assertEquals(0L, histogram.new Snapshot(new long[counts.length], 0L, 123L).getMax());
+    }
+
+    @Test
+    public void testTickHistograms() throws InterruptedException {
+        TickHistograms histograms = new TickHistograms();
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException shouldNotHappen) {
+                throw new RuntimeException(shouldNotHappen);
+            }
+        }, 10_000_000L);
+        updateLoop.addTickListener(histograms);
+        updateLoop.start();
+
+        Thread.sleep(500);
+        updateLoop.stop();
+
+        LatencyHistogram.Snapshot duration = histograms.getDuration().snapshot();
+        assertTrue(duration.getCount() > 30);
+        assertTrue(duration.getValueAtPercentile(1.0) >= 2_000_000L);
+        assertTrue(histograms.getLateness().snapshot().getCount() > 30);
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.knokko.update;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class TestLoopThreadFactory {
+
+    @Test
+    public void testConfiguration() throws InterruptedException {
+        LoopThreadFactory factory = new LoopThreadFactory("Simulation-%d")
+                .setDaemon(true)
+                .setPriority(Thread.MAX_PRIORITY);
+
+        AtomicReference<Thread> updateThread = new AtomicReference<>();
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            updateThread.set(Thread.currentThread());
+            loop.stop();
+        }, 1_000_000L);
+        updateLoop.start(factory);
+        assertTrue(updateLoop.awaitTermination(1_000_000_000L));
+
+        Thread thread = updateThread.get();
+        assertEquals("Simulation-0", thread.getName());
+        assertTrue(thread.isDaemon());
+        assertEquals(Thread.MAX_PRIORITY, thread.getPriority());
+        assertEquals("Simulation-1", factory.newThread(() -> {}).getName());
+
+        assertEquals("Plain", new LoopThreadFactory("Plain").newThread(() -> {}).getName());
+        assertFalse(new LoopThreadFactory("Plain").newThread(() -> {}).isDaemon());
+    }
+
+    @Test
+    public void testAffinityHook() throws InterruptedException {
+        AtomicReference<Thread> pinnedThread = new AtomicReference<>();
+        AtomicReference<int[]> pinnedCpus = new AtomicReference<>();
+        LoopThreadFactory factory = new LoopThreadFactory("Pinned").setAffinity((cpus) -> {
+            pinnedThread.set(Thread.currentThread());
+            pinnedCpus.set(cpus);
+        }, 2, 3);
+
+        Thread thread = factory.newThread(() -> {});
+        thread.start();
+        thread.join();
+
+        assertSame(thread, pinnedThread.get());
+        assertArrayEquals(new int[] { 2, 3 }, pinnedCpus.get());
+    }
+
+    @Test
+    public void testFailingAffinityHook() throws InterruptedException {
+        LoopThreadFactory factory = new LoopThreadFactory("Failing").setAffinity((cpus) -> {
+            throw new UnsupportedOperationException("Expected");
+        }, 0);
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicReference<Boolean> didRun = new AtomicReference<>(false);
+        Thread thread = factory.newThread(() -> didRun.set(true));
+        thread.setUncaughtExceptionHandler((failedThread, exception) -> failure.set(exception));
+        thread.start();
+        thread.join();
+
+        assertTrue(failure.get() instanceof UnsupportedOperationException);
+        assertTrue(didRun.get());
+    }
+
+    @Test
+    public void testInterruptedAffinityHook() throws InterruptedException {
+        LoopThreadFactory factory = new LoopThreadFactory("Interrupted").setAffinity((cpus) -> {
+            throw new InterruptedException("Expected");
+        }, 0);
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicReference<Boolean> wasInterrupted = new AtomicReference<>(false);
+        Thread thread = factory.newThread(() -> wasInterrupted.set(Thread.currentThread().isInterrupted()));
+        thread.setUncaughtExceptionHandler((failedThread, exception) -> failure.set(exception));
+        thread.start();
+        thread.join();
+
+        assertTrue(failure.get() instanceof InterruptedException);
+        assertTrue(wasInterrupted.get());
+    }
+
+    @Test
+    public void testTaskset() throws Exception {
+        boolean hasTaskset = false;
+        String path = System.getenv("PATH");
+        if (path != null) {
+            for (String directory : path.split(File.pathSeparator)) {
+                if (new File(directory, "taskset").canExecute()) hasTaskset = true;
+            }
+        }
+        assumeTrue(hasTaskset, "taskset is not installed");
+        assumeTrue(Files.exists(Paths.get("/proc/thread-self")), "/proc/thread-self is not available");
+
+        // Pin to the first CPU that this thread is allowed to use, since e.g. containers may not allow CPU 0
+        String allowedCpus = getAllowedCpus(Files.readAllLines(Paths.get("/proc/thread-self/status")));
+        int cpu = Integer.parseInt(allowedCpus.split("[,-]")[0]);
+
+        AtomicReference<List<String>> status = new AtomicReference<>();
+        Thread thread = new LoopThreadFactory("Taskset").setAffinity(CpuAffinity.TASKSET, cpu).newThread(() -> {
+            try {
+                status.set(Files.readAllLines(Paths.get("/proc/thread-self/status")));
+            } catch (Exception failure) {
+                throw new RuntimeException(failure);
+            }
+        });
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        thread.setUncaughtExceptionHandler((failedThread, exception) -> failure.set(exception));
+        thread.start();
+        thread.join();
+
+        assertNull(failure.get());
+        assertEquals(Integer.toString(cpu), getAllowedCpus(status.get()));
+    }
+
+    private static String getAllowedCpus(List<String> status) {
+        for (String line : status) {
+            if (line.startsWith("Cpus_allowed_list:")) return line.substring(18).trim();
+        }
+        throw new IllegalArgumentException("Missing Cpus_allowed_list in " + status);
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new LoopThreadFactory(null));
+        assertThrows(IllegalArgumentException.class, () -> new LoopThreadFactory("a").setPriority(0));
+        assertThrows(IllegalArgumentException.class, () -> new LoopThreadFactory("a").setAffinity(null, 1));
+        assertThrows(IllegalArgumentException.class, () -> new LoopThreadFactory("a").setAffinity(cpus -> {}));
+        assertThrows(IllegalArgumentException.class, () -> new LoopThreadFactory("a").setAffinity(cpus -> {}, -1));
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.knokko.update;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestPartitionedUpdate {
+
+    @Test
+    public void testEachPartitionOncePerTick() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        int numPartitions = 8;
+        AtomicIntegerArray partitionCounters = new AtomicIntegerArray(numPartitions);
+        AtomicInteger tickCounter = new AtomicInteger(0);
+
+        PartitionedUpdate partitionedUpdate = new PartitionedUpdate(pool, numPartitions, (loop, partition, total) -> {
+            assertEquals(numPartitions, total);
+
+            // All partitions of the previous tick must have finished before this tick starts
+            assertEquals(tickCounter.get(), partitionCounters.getAndIncrement(partition));
+        });
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            partitionedUpdate.accept(loop);
+            if (tickCounter.incrementAndGet() == 1000) loop.stop();
+        }, 0L);
+        updateLoop.run();
+
+        for (int partition = 0; partition < numPartitions; partition++) {
+            assertEquals(1000, partitionCounters.get(partition));
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void testTimingAndImbalance() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        PartitionedUpdate partitionedUpdate = new PartitionedUpdate(pool, 2, (loop, partition, total) -> {
+            try {
+                Thread.sleep(partition == 0 ? 5 : 30);
+            } catch (InterruptedException shouldNotHappen) {
+                throw new RuntimeException(shouldNotHappen);
+            }
+        });
+        assertEquals(1.0, partitionedUpdate.getLastImbalance());
+
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {}, 1L);
+        for (int counter = 0; counter < 3; counter++) partitionedUpdate.accept(updateLoop);
+
+        assertTrue(partitionedUpdate.getLastDuration(0) >= 5_000_000L);
+        assertTrue(partitionedUpdate.getLastDuration(1) >= 30_000_000L);
+        assertTrue(partitionedUpdate.getTotalDuration(1) >= 90_000_000L);
+
+        // Perfect imbalance would be 2 * 30 / (30 + 5) = 1.71
+        double imbalance = partitionedUpdate.getLastImbalance();
+        assertTrue(imbalance > 1.4 && imbalance <= 2.0, "Imbalance is " + imbalance);
+        pool.shutdown();
+    }
+
+    @Test
+    public void testTimingWithVirtualClock() {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        VirtualClock clock = new VirtualClock();
+        PartitionedUpdate partitionedUpdate = new PartitionedUpdate(
+                pool, 1, (loop, partition, total) -> clock.advance(1234L)
+        );
+
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {}, 1L);
+        updateLoop.setTimeSource(clock);
+        for (int counter = 0; counter < 3; counter++) partitionedUpdate.accept(updateLoop);
+
+        assertEquals(1234L, partitionedUpdate.getLastDuration(0));
+        assertEquals(3 * 1234L, partitionedUpdate.getTotalDuration(0));
+        pool.shutdown();
+    }
+
+    @Test
+    public void testExceptionsArePropagated() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        PartitionedUpdate partitionedUpdate = new PartitionedUpdate(pool, 3, (loop, partition, total) -> {
+            if (partition == 2) throw new UnsupportedOperationException("Expected");
+        });
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {}, 1L);
+        assertThrows(UnsupportedOperationException.class, () -> partitionedUpdate.accept(updateLoop));
+        pool.shutdown();
+    }
+}
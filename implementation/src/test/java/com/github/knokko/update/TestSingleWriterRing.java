@@ -0,0 +1,66 @@
+package com.github.knokko.update;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestSingleWriterRing {
+
+    private static void write(SingleWriterRing ring, long value) {
+        int offset = ring.getNextOffset();
+        ring.setField(offset, value);
+        ring.setField(offset + 1, -value);
+        ring.publish();
+    }
+
+    @Test
+    public void testCopy() {
+        SingleWriterRing ring = new SingleWriterRing(3, 2);
+        assertEquals(0, ring.copy().getNumRecords());
+
+        write(ring, 10);
+        write(ring, 11);
+        SingleWriterRing.Copy copy = ring.copy();
+        assertEquals(0, copy.firstRecord);
+        assertArrayEquals(new long[] { 10, -10, 11, -11 }, copy.fields);
+
+        write(ring, 12);
+        write(ring, 13);
+        write(ring, 14);
+        copy = ring.copy();
+        assertEquals(2, copy.firstRecord);
+        assertArrayEquals(new long[] { 12, -12, 13, -13, 14, -14 }, copy.fields);
+        assertEquals(5, ring.getNumRecords());
+        assertEquals(3, ring.getCapacity());
+    }
+
+    @Test
+    public void testInvalidSize() {
+        assertThrows(IllegalArgumentException.class, () -> new SingleWriterRing(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new SingleWriterRing(1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new SingleWriterRing(Integer.MAX_VALUE, 1));
+        assertThrows(IllegalArgumentException.class, () -> new SingleWriterRing(Integer.MAX_VALUE / 4, 4));
+    }
+
+    @Test
+    public void testConcurrentCopies() throws InterruptedException {
+        SingleWriterRing ring = new SingleWriterRing(50, 2);
+        Thread writer = new Thread(() -> {
+            // Record N has the fields (N, -N), so any overwritten record in a copy would be noticed
+            for (long record = 0; record < 10_000_000L; record++) write(ring, record);
+        });
+        writer.start();
+
+        while (writer.isAlive()) {
+            SingleWriterRing.Copy copy = ring.copy();
+            assertTrue(copy.getNumRecords() <= 50);
+            for (int index = 0; index < copy.getNumRecords(); index++) {
+                assertEquals(copy.firstRecord + index, copy.fields[2 * index]);
+                assertEquals(-copy.firstRecord - index, copy.fields[2 * index + 1]);
+            }
+        }
+        writer.join();
+        assertEquals(50, ring.copy().getNumRecords());
+        assertEquals(10_000_000L, ring.getNumRecords());
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.knokko.update;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestSlidingUpdateCounter {
+
+    @Test
+    public void testDetails() {
+        // Period of 1000 split into 10 buckets of 100
+        SlidingUpdateCounter counter = new SlidingUpdateCounter(1000, 10, 4, 5000, TimeSource.SYSTEM);
+
+        for (int time = 5000; time < 6000; time += 10) counter.increment(time);
+
+        // First period is not yet finished
+        assertEquals(-1, counter.getValue(5999));
+        assertEquals(100, counter.getValue(6000));
+
+        // The value should slide 1 bucket at a time
+        for (int time = 6000; time < 6100; time += 50) counter.increment(time);
+        assertEquals(100, counter.getValue(6099));
+        assertEquals(92, counter.getValue(6100));
+
+        // When no increments happen for a while, the old buckets must be ignored
+        assertEquals(2, counter.getValue(7050));
+        assertEquals(0, counter.getValue(7100));
+        assertEquals(0, counter.getValue(20_000));
+
+        // Buckets that are reused must be reset
+        counter.increment(20_000);
+        counter.increment(20_050);
+        assertEquals(0, counter.getValue(20_099));
+        assertEquals(2, counter.getValue(20_100));
+        assertEquals(2, counter.getValue(21_099));
+        assertEquals(0, counter.getValue(21_100));
+    }
+
+    @Test
+    public void testLongUptime() {
+        // Period of 1 second split into 10 buckets of 100 milliseconds
+        long bucketLength = 100_000_000L;
+        SlidingUpdateCounter counter = new SlidingUpdateCounter(10 * bucketLength, 10, 1, 0, TimeSource.SYSTEM);
+        for (int repetition = 0; repetition < 5; repetition++) counter.increment(0);
+
+        // After about 214 days, bucket 0 shares its slot and the lowest 24 bits of its epoch with the current bucket
+        long lateBucket = 11L * (1L << 24);
+        assertEquals(0, counter.getValue((lateBucket + 1) * bucketLength));
+
+        counter.increment(lateBucket * bucketLength);
+        assertEquals(1, counter.getValue((lateBucket + 1) * bucketLength));
+    }
+
+    @Test
+    public void testConcurrentIncrements() throws InterruptedException {
+        SlidingUpdateCounter counter = new SlidingUpdateCounter(1000, 10, 4, 0, TimeSource.SYSTEM);
+        Thread[] threads = new Thread[8];
+        for (int index = 0; index < threads.length; index++) {
+            threads[index] = new Thread(() -> {
+                for (int time = 0; time < 1000; time++) {
+                    for (int repetition = 0; repetition < 100; repetition++) counter.increment(time);
+                }
+            });
+            threads[index].start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(100 * 1000 * threads.length, counter.getValue(1000));
+        assertEquals(90 * 1000 * threads.length, counter.getValue(1100));
+    }
+
+    @Test
+    public void testRealTime() throws InterruptedException {
+        SlidingUpdateCounter counter = new SlidingUpdateCounter(100_000_000L, 10);
+        UpdateLoop updateLoop = new UpdateLoop(loop -> counter.increment(), 1_000_000L);
+        updateLoop.start();
+
+        Thread.sleep(50);
+        assertEquals(-1, counter.getValue());
+
+        Thread.sleep(250);
+        long value = counter.getValue();
+        updateLoop.stop();
+        assertTrue(value >= 80 && value <= 120, "Value is " + value);
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new SlidingUpdateCounter(1000, 0));
+        assertThrows(IllegalArgumentException.class, () -> new SlidingUpdateCounter(5, 10));
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.knokko.update;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestStallWatchdog {
+
+    private static void busyWait(long duration) {
+        long startTime = System.nanoTime();
+        //noinspection StatementWithEmptyBody
+        while (System.nanoTime() - startTime < duration);
+    }
+
+    @Test
+    public void testDetectStall() throws InterruptedException {
+        AtomicInteger tickCounter = new AtomicInteger(0);
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            // The 5th tick stalls for 200ms
+            if (tickCounter.incrementAndGet() == 5) busyWait(200_000_000L);
+        }, 10_000_000L);
+
+        AtomicInteger stallCounter = new AtomicInteger(0);
+        AtomicLong stallTime = new AtomicLong();
+        AtomicReference<Thread> stalledThread = new AtomicReference<>();
+        AtomicReference<StackTraceElement[]> stackTrace = new AtomicReference<>();
+
+        StallWatchdog watchdog = new StallWatchdog(5_000_000L);
+        watchdog.watch(updateLoop, 5.0, (loop, time, thread, trace) -> {
+            assertSame(updateLoop, loop);
+            stallCounter.incrementAndGet();
+            stallTime.set(time);
+            stalledThread.set(thread);
+            stackTrace.set(trace);
+        });
+        assertEquals(1, watchdog.getNumWatchedLoops());
+
+        Thread updateThread = new Thread(updateLoop);
+        updateThread.start();
+        Thread.sleep(400);
+        updateLoop.stop();
+        updateThread.join();
+        watchdog.shutdown();
+
+        assertTrue(tickCounter.get() > 10);
+
+        // The stall should be reported exactly once
+        assertEquals(1, stallCounter.get());
+        assertTrue(stallTime.get() >= 50_000_000L && stallTime.get() < 200_000_000L);
+        assertSame(updateThread, stalledThread.get());
+        assertTrue(Arrays.stream(stackTrace.get()).anyMatch(
+                element -> element.getMethodName().equals("busyWait")
+        ), Arrays.toString(stackTrace.get()));
+    }
+
+    @Test
+    public void testNoFalsePositivesInBatchedMode() {
+        VirtualClock clock = new VirtualClock();
+        AtomicLong maxBatch = new AtomicLong(0);
+        UpdateLoop updateLoop = new UpdateLoop((loop, ticks) -> {
+            maxBatch.accumulateAndGet(ticks, Math::max);
+
+            // The first call causes a backlog of 100 ticks, which the second call processes in 50ms (real time)
+            if (maxBatch.get() == 1) clock.advance(100_000_000L);
+            else {
+                busyWait(50_000_000L);
+                loop.stop();
+            }
+        }, 1_000_000L, 1_000_000_000L);
+        updateLoop.setTimeSource(clock);
+        AtomicInteger stallCounter = new AtomicInteger(0);
+
+        StallWatchdog watchdog = new StallWatchdog(1_000_000L);
+        watchdog.watch(updateLoop, 5.0, (loop, time, thread, trace) -> stallCounter.incrementAndGet());
+        updateLoop.run();
+        watchdog.shutdown();
+
+        // The batch took only 0.5ms per tick, so it should not be considered a stall
+        assertTrue(maxBatch.get() >= 100, "Max batch is " + maxBatch.get());
+        assertEquals(0, stallCounter.get());
+    }
+
+    @Test
+    public void testNoFalsePositives() throws InterruptedException {
+        UpdateLoop updateLoop = new UpdateLoop(loop -> busyWait(2_000_000L), 5_000_000L);
+        AtomicInteger stallCounter = new AtomicInteger(0);
+
+        StallWatchdog watchdog = new StallWatchdog(1_000_000L);
+        watchdog.watch(updateLoop, 10.0, (loop, time, thread, trace) -> stallCounter.incrementAndGet());
+        updateLoop.start();
+        Thread.sleep(300);
+        updateLoop.stop();
+
+        watchdog.unwatch(updateLoop);
+        assertEquals(0, watchdog.getNumWatchedLoops());
+        watchdog.shutdown();
+        assertEquals(0, stallCounter.get());
+        assertThrows(IllegalStateException.class, () -> watchdog.watch(
+                updateLoop, 1.0, (loop, time, thread, trace) -> {}
+        ));
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.knokko.update;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTickMetrics {
+
+    @Test
+    public void testDetails() {
+        UpdateLoop loop = new UpdateLoop(updateLoop -> {}, 100L);
+        TickMetrics metrics = new TickMetrics();
+
+        metrics.onTick(loop, 1000, 1010, 1050, 0);
+        assertEquals(1, metrics.getTickCount());
+        assertEquals(0, metrics.getOverrunCount());
+        assertEquals(10, metrics.getLastLateness());
+        assertEquals(40, metrics.getLastDuration());
+
+        metrics.onTick(loop, 1100, 1150, 1300, 20);
+        metrics.onTick(loop, 1200, 1300, 1320, 0);
+        assertEquals(3, metrics.getTickCount());
+        assertEquals(1, metrics.getOverrunCount());
+        assertEquals(100, metrics.getLastLateness());
+        assertEquals(100, metrics.getMaxLateness());
+        assertEquals(160, metrics.getTotalLateness());
+        assertEquals(20, metrics.getLastDuration());
+        assertEquals(150, metrics.getMaxDuration());
+        assertEquals(210, metrics.getTotalDuration());
+        assertEquals(20, metrics.getTotalDroppedBacklog());
+    }
+
+    @Test
+    public void testBatchedOverruns() {
+        VirtualClock clock = new VirtualClock();
+        TickMetrics metrics = new TickMetrics();
+        UpdateLoop updateLoop = new UpdateLoop((loop, ticks) -> {
+            // The first batch (1 tick) takes 10ms, which is an overrun, and causes a batch of 10 ticks that takes
+            // only 5ms, which is not
+            if (metrics.getTickCount() == 0) clock.advance(10_000_000L);
+            if (metrics.getTickCount() == 1) clock.advance(5_000_000L);
+            if (metrics.getTickCount() == 2) loop.stop();
+        }, 1_000_000L, 1_000_000_000L);
+        updateLoop.setTimeSource(clock);
+        updateLoop.addTickListener(metrics);
+        updateLoop.run();
+
+        assertEquals(3, metrics.getTickCount());
+        assertEquals(1, metrics.getOverrunCount());
+        assertEquals(10_000_000L, metrics.getMaxDuration());
+    }
+
+    @Test
+    public void testWithUpdateLoop() throws InterruptedException {
+        AtomicInteger counter = new AtomicInteger(0);
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            counter.incrementAndGet();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException shouldNotHappen) {
+                throw new RuntimeException(shouldNotHappen);
+            }
+        }, 10_000_000L, 50_000_000L);
+        TickMetrics metrics = new TickMetrics();
+        updateLoop.addTickListener(metrics);
+        updateLoop.start();
+
+        Thread.sleep(500);
+        updateLoop.stop();
+        Thread.sleep(50);
+
+        // Since the update function takes 20ms and the period is 10ms, every tick is an overrun
+        assertEquals(counter.get(), metrics.getTickCount());
+        assertEquals(counter.get(), metrics.getOverrunCount());
+        assertTrue(metrics.getMaxDuration() >= 20_000_000L);
+        assertTrue(metrics.getTotalDuration() >= 20_000_000L * counter.get());
+
+        // The backlog grows by 10ms per tick, so it should exceed the maximum backlog of 50ms quickly
+        assertTrue(metrics.getTotalDroppedBacklog() > 100_000_000L);
+        assertTrue(metrics.getMaxLateness() <= 60_000_000L);
+    }
+
+    @Test
+    public void testRemoveTickListener() throws InterruptedException {
+        TickMetrics metrics1 = new TickMetrics();
+        TickMetrics metrics2 = new TickMetrics();
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {}, 1_000_000L);
+        updateLoop.addTickListener(metrics1);
+        updateLoop.addTickListener(metrics2);
+        updateLoop.start();
+
+        Thread.sleep(100);
+        updateLoop.removeTickListener(metrics1);
+        long stoppedCount = metrics1.getTickCount();
+        assertTrue(stoppedCount > 50);
+
+        Thread.sleep(100);
+        updateLoop.stop();
+        assertTrue(metrics1.getTickCount() <= stoppedCount + 1);
+        assertTrue(metrics2.getTickCount() > 150);
+    }
+}
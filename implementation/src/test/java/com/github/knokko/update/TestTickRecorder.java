@@ -0,0 +1,85 @@
+package com.github.knokko.update;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTickRecorder {
+
+    @Test
+    public void testRingBuffer() {
+        UpdateLoop loop = new UpdateLoop(updateLoop -> {}, 100L);
+        TickRecorder recorder = new TickRecorder(3);
+        assertEquals(0, recorder.snapshot().size());
+
+        recorder.onTick(loop, 1000, 1010, 1050, 0);
+        recorder.onTick(loop, 1100, 1150, 1300, 20);
+        List<TickRecorder.Tick> ticks = recorder.snapshot();
+        assertEquals(2, ticks.size());
+        assertEquals(0, ticks.get(0).getNumber());
+        assertEquals(1010, ticks.get(0).getStartTime());
+        assertEquals(1, ticks.get(1).getNumber());
+        assertEquals(20, ticks.get(1).getDroppedBacklog());
+
+        recorder.onTick(loop, 1200, 1300, 1320, 0);
+        recorder.onTick(loop, 1300, 1320, 1330, 0);
+        recorder.onTick(loop, 1400, 1400, 1410, 5);
+        assertEquals(5, recorder.getNumRecordedTicks());
+
+        // Only the last 3 ticks should be remembered
+        ticks = recorder.snapshot();
+        assertEquals(3, ticks.size());
+        assertEquals(2, ticks.get(0).getNumber());
+        assertEquals(1200, ticks.get(0).getScheduledTime());
+        assertEquals(1320, ticks.get(0).getEndTime());
+        assertEquals(4, ticks.get(2).getNumber());
+        assertEquals(1400, ticks.get(2).getScheduledTime());
+        assertEquals(5, ticks.get(2).getDroppedBacklog());
+    }
+
+    @Test
+    public void testDumpAndRead() throws IOException {
+        UpdateLoop loop = new UpdateLoop(updateLoop -> {}, 100L);
+        TickRecorder recorder = new TickRecorder(100);
+        for (int tick = 0; tick < 250; tick++) {
+            recorder.onTick(loop, 100 * tick, 100 * tick + 3, 100 * tick + 50, tick % 7);
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(100, recorder.dump(Channels.newChannel(output)));
+        assertEquals(20 + 100 * 40, output.size());
+
+        List<TickRecorder.Tick> ticks = TickRecorder.readTrace(
+                Channels.newChannel(new ByteArrayInputStream(output.toByteArray()))
+        );
+        assertEquals(100, ticks.size());
+        for (int index = 0; index < 100; index++) {
+            TickRecorder.Tick tick = ticks.get(index);
+            long number = 150 + index;
+            assertEquals(number, tick.getNumber());
+            assertEquals(100 * number, tick.getScheduledTime());
+            assertEquals(100 * number + 3, tick.getStartTime());
+            assertEquals(100 * number + 50, tick.getEndTime());
+            assertEquals(number % 7, tick.getDroppedBacklog());
+        }
+
+        Path file = Files.createTempFile("ticks", ".trace");
+        try {
+            assertEquals(100, recorder.dump(file));
+            assertEquals(ticks.toString(), TickRecorder.readTrace(file).toString());
+
+            Files.write(file, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20 });
+            assertThrows(IOException.class, () -> TickRecorder.readTrace(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
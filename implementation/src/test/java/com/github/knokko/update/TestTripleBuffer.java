@@ -0,0 +1,72 @@
+package com.github.knokko.update;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTripleBuffer {
+
+    @Test
+    public void testDetails() {
+        AtomicInteger counter = new AtomicInteger(0);
+        TripleBuffer<int[]> buffer = new TripleBuffer<>(() -> new int[] { counter.getAndIncrement() });
+
+        int[] initial = buffer.getReadBuffer();
+        assertFalse(buffer.hasNewData());
+        assertSame(initial, buffer.getReadBuffer());
+
+        int[] written = buffer.getWriteBuffer();
+        assertNotSame(initial, written);
+        written[0] = 100;
+        buffer.publish();
+        assertTrue(buffer.hasNewData());
+        assertNotSame(written, buffer.getWriteBuffer());
+        assertNotSame(initial, buffer.getWriteBuffer());
+
+        assertSame(written, buffer.getReadBuffer());
+        assertFalse(buffer.hasNewData());
+        assertEquals(100, buffer.getReadBuffer()[0]);
+
+        // When the writer publishes twice, the reader should only see the last one
+        buffer.getWriteBuffer()[0] = 101;
+        buffer.publish();
+        buffer.getWriteBuffer()[0] = 102;
+        buffer.publish();
+        assertEquals(102, buffer.getReadBuffer()[0]);
+        assertEquals(102, buffer.getReadBuffer()[0]);
+    }
+
+    @Test
+    public void testConcurrentConsistency() throws InterruptedException {
+        // Each buffer contains the tick number many times. If the reader ever sees a buffer while the writer is
+        // writing to it, it will observe different values.
+        TripleBuffer<long[]> buffer = new TripleBuffer<>(() -> new long[1000]);
+        int numTicks = 100_000;
+
+        Thread writer = new Thread(() -> {
+            for (long tick = 1; tick <= numTicks; tick++) {
+                long[] state = buffer.getWriteBuffer();
+                for (int index = 0; index < state.length; index++) state[index] = tick;
+                buffer.publish();
+            }
+        });
+        writer.start();
+
+        long lastTick = 0;
+        while (lastTick < numTicks) {
+            long[] state = buffer.getReadBuffer();
+            for (long value : state) assertEquals(state[0], value);
+            assertTrue(state[0] >= lastTick);
+            lastTick = state[0];
+        }
+        writer.join();
+    }
+
+    @Test
+    public void testDistinctBuffers() {
+        int[] shared = new int[1];
+        assertThrows(IllegalArgumentException.class, () -> new TripleBuffer<>(() -> shared));
+    }
+}
@@ -2,10 +2,22 @@ package com.github.knokko.update;
 
 import org.junit.jupiter.api.Test;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static java.lang.Math.abs;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 public class TestUpdateLoop {
 
@@ -94,4 +106,402 @@ public class TestUpdateLoop {
 
         assertThrows(IllegalStateException.class, updateLoop::run);
     }
+
+    @Test
+    public void testStartWithThreadFactory() throws InterruptedException {
+        AtomicReference<String> threadName = new AtomicReference<>();
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            threadName.set(Thread.currentThread().getName());
+            loop.stop();
+        }, 1_000_000L);
+        updateLoop.start(task -> new Thread(task, "TestUpdateThread"));
+
+        Thread.sleep(100);
+        assertEquals("TestUpdateThread", threadName.get());
+        assertThrows(IllegalStateException.class, updateLoop::run);
+    }
+
+    @Test
+    public void testStartOnExecutor() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        AtomicInteger counter = new AtomicInteger(0);
+        UpdateLoop updateLoop = new UpdateLoop(loop -> counter.incrementAndGet(), 1_000_000L);
+        updateLoop.startOn(executor);
+
+        Thread.sleep(100);
+        updateLoop.stop();
+        executor.shutdown();
+        assertTrue(counter.get() > 50);
+    }
+
+    @Test
+    public void testStartOnVirtualThread() throws Exception {
+        Method ofVirtual;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+        } catch (NoSuchMethodException oldJava) {
+            ofVirtual = null;
+        }
+        assumeTrue(ofVirtual != null, "Virtual threads are only available on Java 21+");
+        Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+        ThreadFactory threadFactory = (ThreadFactory) factory.invoke(ofVirtual.invoke(null));
+
+        AtomicReference<Object> isVirtual = new AtomicReference<>();
+        AtomicInteger counter = new AtomicInteger(0);
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            if (counter.incrementAndGet() == 1) {
+                try {
+                    isVirtual.set(Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()));
+                } catch (ReflectiveOperationException shouldNotHappen) {
+                    throw new RuntimeException(shouldNotHappen);
+                }
+            }
+        }, 1_000_000L);
+        updateLoop.start(threadFactory);
+
+        Thread.sleep(200);
+        updateLoop.stop();
+        assertEquals(true, isVirtual.get());
+        assertTrue(counter.get() > 100);
+    }
+
+    @Test
+    public void testInterpolationAlpha() throws InterruptedException {
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {}, 200_000_000L);
+        assertEquals(0.0, updateLoop.getInterpolationAlpha());
+        updateLoop.start();
+
+        Thread.sleep(50);
+        double firstAlpha = updateLoop.getInterpolationAlpha();
+        assertTrue(firstAlpha > 0.1 && firstAlpha < 0.5, "Alpha is " + firstAlpha);
+
+        Thread.sleep(50);
+        double secondAlpha = updateLoop.getInterpolationAlpha();
+        assertTrue(secondAlpha > firstAlpha + 0.1 && secondAlpha < 0.75, "Alpha is " + secondAlpha);
+
+        Thread.sleep(150);
+        double thirdAlpha = updateLoop.getInterpolationAlpha();
+        assertTrue(thirdAlpha < secondAlpha, "Alpha is " + thirdAlpha);
+        updateLoop.stop();
+    }
+
+    @Test
+    public void testInterpolationAlphaWhenOverdue() throws InterruptedException {
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException shouldNotHappen) {
+                throw new RuntimeException(shouldNotHappen);
+            }
+        }, 10_000_000L);
+        updateLoop.start();
+
+        Thread.sleep(250);
+        assertEquals(1.0, updateLoop.getInterpolationAlpha());
+        updateLoop.stop();
+    }
+
+    @Test
+    public void testSetPeriodDoesNotAllocate() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean, "This JVM can't measure allocations");
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+        assumeTrue(
+                allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled(),
+                "Thread allocation measurement is not supported or not enabled"
+        );
+
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {}, 1000L);
+        long threadID = Thread.currentThread().getId();
+
+        // Warm up, so that the measurement doesn't include class loading or JIT compilation
+        for (int counter = 0; counter < 100_000; counter++) updateLoop.setPeriod(1000L + counter % 100);
+
+        long startBytes = allocationBean.getThreadAllocatedBytes(threadID);
+        for (int counter = 0; counter < 100_000; counter++) updateLoop.setPeriod(1000L + counter % 100);
+        long allocatedBytes = allocationBean.getThreadAllocatedBytes(threadID) - startBytes;
+
+        // The old implementation allocated at least 24 bytes per call
+        assertTrue(allocatedBytes < 100_000, allocatedBytes + " bytes were allocated");
+    }
+
+    @Test
+    public void testConcurrentSetPeriod() throws InterruptedException {
+        AtomicInteger counter = new AtomicInteger(0);
+        UpdateLoop updateLoop = new UpdateLoop(loop -> counter.incrementAndGet(), 1_000_000L);
+        updateLoop.start();
+
+        Thread[] threads = new Thread[3];
+        for (int index = 0; index < threads.length; index++) {
+            threads[index] = new Thread(() -> {
+                long endTime = System.nanoTime() + 300_000_000L;
+                while (System.nanoTime() < endTime) updateLoop.setPeriod(1_000_000L);
+            });
+            threads[index].start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        int midValue = counter.get();
+        assertEquals(1_000_000L, updateLoop.getPeriod());
+
+        Thread.sleep(200);
+        updateLoop.stop();
+        int finalValue = counter.get();
+        if (abs(finalValue - midValue - 200) > 40) assertEquals(midValue + 200, finalValue);
+    }
+
+    @Test
+    public void testSetSamePeriodKeepsSchedule() {
+        VirtualClock clock = new VirtualClock();
+        AtomicInteger counter = new AtomicInteger(0);
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            // Setting the same period every tick must not restart the schedule, which would cause a tick without delay
+            loop.setPeriod(10_000_000L);
+            if (counter.incrementAndGet() == 1000 || clock.nanoTime() >= 1_000_000_000L) loop.stop();
+        }, 10_000_000L);
+        updateLoop.setTimeSource(clock);
+        updateLoop.run();
+
+        assertEquals(101, counter.get());
+    }
+
+    @Test
+    public void testSetPeriodIgnoresMonitor() throws InterruptedException {
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {}, 1000L);
+        AtomicInteger numFinished = new AtomicInteger(0);
+        Thread otherThread;
+
+        // Code that synchronizes on the update loop must not block setPeriod or the tick listeners
+        synchronized (updateLoop) {
+            otherThread = new Thread(() -> {
+                updateLoop.setPeriod(2000L);
+                TickListener listener = (loop, scheduledTime, startTime, endTime, droppedBacklog) -> {};
+                updateLoop.addTickListener(listener);
+                updateLoop.removeTickListener(listener);
+                numFinished.incrementAndGet();
+            });
+            otherThread.start();
+            otherThread.join(1000);
+        }
+
+        assertFalse(otherThread.isAlive());
+        assertEquals(1, numFinished.get());
+        assertEquals(2000L, updateLoop.getPeriod());
+    }
+
+    @Test
+    public void testStopWakesUp() throws InterruptedException {
+        WaitStrategy[] strategies = {
+                WaitStrategy.SLEEP, WaitStrategy.PARK, WaitStrategy.SPIN,
+                WaitStrategy.sleepThenSpin(1_000_000L), new CalibratedWaitStrategy()
+        };
+        for (WaitStrategy strategy : strategies) {
+            AtomicInteger counter = new AtomicInteger(0);
+            UpdateLoop updateLoop = new UpdateLoop(loop -> counter.incrementAndGet(), 5_000_000_000L);
+            updateLoop.setWaitStrategy(strategy);
+            assertFalse(updateLoop.awaitTermination(1_000_000L));
+            updateLoop.start();
+
+            Thread.sleep(50);
+            assertEquals(1, counter.get());
+
+            // The update loop should not wait until the next update, which would take 5 seconds
+            long startTime = System.nanoTime();
+            updateLoop.stop();
+            assertTrue(updateLoop.awaitTermination(1_000_000_000L));
+            assertTrue(System.nanoTime() - startTime < 500_000_000L);
+            assertEquals(1, counter.get());
+        }
+    }
+
+    @Test
+    public void testSetPeriodWakesUp() throws InterruptedException {
+        AtomicInteger counter = new AtomicInteger(0);
+        UpdateLoop updateLoop = new UpdateLoop(loop -> counter.incrementAndGet(), 5_000_000_000L);
+        updateLoop.start();
+        Thread.sleep(50);
+        assertEquals(1, counter.get());
+
+        updateLoop.setPeriod(10_000_000L);
+        Thread.sleep(205);
+        updateLoop.stop();
+        assertTrue(updateLoop.awaitTermination(1_000_000_000L));
+        assertTrue(counter.get() > 15, "Counter is " + counter.get());
+    }
+
+    @Test
+    public void testTrigger() throws InterruptedException {
+        AtomicInteger counter = new AtomicInteger(0);
+        UpdateLoop updateLoop = new UpdateLoop(loop -> counter.incrementAndGet(), 5_000_000_000L);
+        updateLoop.start();
+        Thread.sleep(50);
+        assertEquals(1, counter.get());
+
+        for (int expected = 2; expected < 5; expected++) {
+            updateLoop.trigger();
+            Thread.sleep(50);
+            assertEquals(expected, counter.get());
+        }
+
+        updateLoop.stop();
+        assertTrue(updateLoop.awaitTermination(1_000_000_000L));
+    }
+
+    @Test
+    public void testTriggerDoesNotChangeSchedule() {
+        VirtualClock clock = new VirtualClock();
+        AtomicInteger counter = new AtomicInteger(0);
+        long[] tickTimes = new long[6];
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            int index = counter.getAndIncrement();
+            tickTimes[index] = clock.nanoTime();
+            if (index == 1) {
+                clock.advance(1_000_000L);
+                loop.trigger();
+            }
+            if (index == 5) loop.stop();
+        }, 10_000_000L);
+        updateLoop.setTimeSource(clock);
+        updateLoop.run();
+
+        // The extra update happens directly after the second update, but the other updates are still on schedule
+        assertArrayEquals(new long[] {
+                0L, 10_000_000L, 11_000_000L, 20_000_000L, 30_000_000L, 40_000_000L
+        }, tickTimes);
+    }
+
+    @Test
+    public void testTriggerOnScheduler() throws InterruptedException {
+        UpdateScheduler scheduler = new UpdateScheduler(1);
+        AtomicInteger counter = new AtomicInteger(0);
+        UpdateLoop updateLoop = new UpdateLoop(loop -> counter.incrementAndGet(), 5_000_000_000L);
+        scheduler.schedule(updateLoop);
+        Thread.sleep(50);
+        assertEquals(1, counter.get());
+
+        updateLoop.trigger();
+        Thread.sleep(50);
+        assertEquals(2, counter.get());
+
+        updateLoop.stop();
+        assertTrue(updateLoop.awaitTermination(1_000_000_000L));
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testDriftFreeOverWeeks() {
+        VirtualClock clock = new VirtualClock();
+        Random rng = new Random(123);
+        long period = 1_000_000_000L;
+        long numTicks = 21L * 24L * 3600L + 1L;
+
+        AtomicLong counter = new AtomicLong(0);
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            // Occasionally, an update takes much longer than the period and the maximum backlog
+            if (rng.nextInt(100) == 0) clock.advance(rng.nextInt(5_000_000) * 1000L);
+            if (counter.incrementAndGet() == numTicks) loop.stop();
+        }, period, 500_000_000L);
+        updateLoop.setTimeSource(clock);
+        updateLoop.setDriftFree(true);
+        assertTrue(updateLoop.isDriftFree());
+
+        AtomicLong listenerCounter = new AtomicLong(0);
+        updateLoop.addTickListener((loop, scheduledTime, startTime, endTime, droppedBacklog) -> {
+            assertEquals(listenerCounter.getAndIncrement() * period, scheduledTime);
+            assertEquals(0L, droppedBacklog);
+        });
+        updateLoop.run();
+
+        assertEquals(numTicks, listenerCounter.get());
+        assertEquals(numTicks, updateLoop.getExecutedTicks());
+        assertEquals(1L + clock.nanoTime() / period, updateLoop.getOwedTicks());
+    }
+
+    @Test
+    public void testOwedTicksWithoutDriftFree() {
+        VirtualClock clock = new VirtualClock();
+        AtomicLong counter = new AtomicLong(0);
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            long value = counter.incrementAndGet();
+
+            // The 10th tick takes 2 seconds, but only 500ms of backlog will be kept
+            if (value == 10) {
+                clock.advance(2_000_000_000L);
+                assertEquals(10 + 200, loop.getOwedTicks());
+            }
+            if (value == 100) loop.stop();
+        }, 10_000_000L, 500_000_000L);
+        updateLoop.setTimeSource(clock);
+        assertEquals(0, updateLoop.getOwedTicks());
+        updateLoop.run();
+
+        assertEquals(100, updateLoop.getExecutedTicks());
+        assertEquals(100, updateLoop.getOwedTicks());
+
+        // The 11th tick was scheduled at 100ms, but the clock was at 2090ms, so 1490ms of backlog was discarded
+        assertEquals(99 * 10_000_000L + 1_490_000_000L, clock.nanoTime());
+    }
+
+    @Test
+    public void testDriftFreeBatchSize() {
+        VirtualClock clock = new VirtualClock();
+        List<Long> batchSizes = new ArrayList<>();
+        AtomicLong totalTicks = new AtomicLong(0);
+        UpdateLoop updateLoop = new UpdateLoop((loop, ticks) -> {
+            batchSizes.add(ticks);
+
+            // The first update takes 100ms, which is much larger than the maximum backlog of 10ms
+            if (batchSizes.size() == 1) clock.advance(100_000_000L);
+            if (totalTicks.addAndGet(ticks) == 150) loop.stop();
+        }, 1_000_000L, 10_000_000L);
+        updateLoop.setTimeSource(clock);
+        updateLoop.setDriftFree(true);
+        updateLoop.run();
+
+        // The ticks scheduled at 1ms, ..., 99ms should be split into batches of at most 1 + 10ms / 1ms ticks
+        List<Long> expectedSizes = new ArrayList<>();
+        expectedSizes.add(1L);
+        for (int counter = 0; counter < 9; counter++) expectedSizes.add(11L);
+        for (int counter = 0; counter < 50; counter++) expectedSizes.add(1L);
+        assertEquals(expectedSizes, batchSizes);
+
+        // No tick should have been dropped
+        assertEquals(149_000_000L, clock.nanoTime());
+        assertEquals(150, updateLoop.getExecutedTicks());
+        assertEquals(150, updateLoop.getOwedTicks());
+    }
+
+    @Test
+    public void testDriftFreePeriodChange() {
+        for (boolean driftFree : new boolean[] { false, true }) {
+            VirtualClock clock = new VirtualClock();
+            long[] tickTimes = new long[6];
+            AtomicInteger counter = new AtomicInteger(0);
+            UpdateLoop updateLoop = new UpdateLoop(loop -> {
+                int index = counter.getAndIncrement();
+                tickTimes[index] = clock.nanoTime();
+                if (index == 3) {
+                    clock.advance(4_000_000L);
+                    loop.setPeriod(5_000_000L);
+                }
+                if (index == 5) loop.stop();
+            }, 10_000_000L);
+            updateLoop.setTimeSource(clock);
+            updateLoop.setDriftFree(driftFree);
+            updateLoop.run();
+
+            if (driftFree) {
+                // The new period should start at the next scheduled update
+                assertArrayEquals(new long[] {
+                        0L, 10_000_000L, 20_000_000L, 30_000_000L, 40_000_000L, 45_000_000L
+                }, tickTimes);
+            } else {
+                // The schedule should restart at the moment of the period change, and the update during which the
+                // period was changed counts as the first update of the new schedule
+                assertArrayEquals(new long[] {
+                        0L, 10_000_000L, 20_000_000L, 30_000_000L, 39_000_000L, 44_000_000L
+                }, tickTimes);
+            }
+        }
+    }
 }
@@ -0,0 +1,181 @@
+package com.github.knokko.update;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.Math.abs;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestUpdateLoopGroup {
+
+    private static UpdateLoop recordingLoop(List<Long> scheduledTimes) {
+        UpdateLoop loop = new UpdateLoop(updateLoop -> {}, 1L);
+        loop.addTickListener((updateLoop, scheduledTime, startTime, endTime, droppedBacklog) ->
+                scheduledTimes.add(scheduledTime)
+        );
+        return loop;
+    }
+
+    @Test
+    public void testRatiosAndPhases() throws InterruptedException {
+        long basePeriod = 10_000_000L;
+        UpdateLoopGroup group = new UpdateLoopGroup(basePeriod);
+
+        List<Long> fastTimes = Collections.synchronizedList(new ArrayList<>());
+        List<Long> mediumTimes = Collections.synchronizedList(new ArrayList<>());
+        List<Long> slowTimes = Collections.synchronizedList(new ArrayList<>());
+        UpdateLoop fastLoop = recordingLoop(fastTimes);
+        group.add(fastLoop, 1, 0);
+        group.add(recordingLoop(mediumTimes), 2, 0);
+        group.add(recordingLoop(slowTimes), 5, 1);
+
+        assertEquals(basePeriod, fastLoop.getPeriod());
+        assertThrows(IllegalStateException.class, fastLoop::run);
+
+        group.start();
+        Thread.sleep(1000);
+        group.stop();
+        Thread.sleep(50);
+
+        int numTicks = fastTimes.size();
+        if (abs(numTicks - 100) > 20) assertEquals(100, numTicks);
+        assertEquals((numTicks + 1) / 2, mediumTimes.size());
+        assertEquals((numTicks + 3) / 5, slowTimes.size());
+
+        // All members should be updated on the master ticks
+        for (int index = 0; index < mediumTimes.size(); index++) {
+            assertEquals(fastTimes.get(2 * index), mediumTimes.get(index));
+        }
+        for (int index = 0; index < slowTimes.size(); index++) {
+            assertEquals(fastTimes.get(1 + 5 * index), slowTimes.get(index));
+        }
+    }
+
+    @Test
+    public void testStopMember() throws InterruptedException {
+        UpdateLoopGroup group = new UpdateLoopGroup(1_000_000L);
+        AtomicInteger counter1 = new AtomicInteger(0);
+        AtomicInteger counter2 = new AtomicInteger(0);
+        UpdateLoop loop1 = new UpdateLoop(loop -> counter1.incrementAndGet(), 1L);
+        group.add(loop1, 1, 0);
+        group.add(new UpdateLoop(loop -> {
+            if (counter2.incrementAndGet() == 10) loop.stop();
+        }, 1L), 2, 1);
+        assertEquals(2, group.getNumMembers());
+
+        group.start();
+        Thread.sleep(200);
+        assertEquals(10, counter2.get());
+        assertEquals(1, group.getNumMembers());
+
+        loop1.stop();
+        Thread.sleep(20);
+        int stoppedValue = counter1.get();
+        assertEquals(0, group.getNumMembers());
+        Thread.sleep(50);
+        assertEquals(stoppedValue, counter1.get());
+        group.stop();
+    }
+
+    @Test
+    public void testStopGroupTerminatesMembers() throws InterruptedException {
+        UpdateLoopGroup group = new UpdateLoopGroup(1_000_000L);
+        UpdateLoop member1 = new UpdateLoop(loop -> {}, 1L);
+        UpdateLoop member2 = new UpdateLoop(loop -> {}, 1L);
+        group.add(member1, 1, 0);
+        group.add(member2, 3, 2);
+
+        group.start();
+        Thread.sleep(20);
+        assertFalse(member1.awaitTermination(0L));
+        group.stop();
+
+        assertTrue(member1.awaitTermination(1_000_000_000L));
+        assertTrue(member2.awaitTermination(1_000_000_000L));
+        assertEquals(0, group.getNumMembers());
+
+        // Members that are added after the group terminated, are terminated immediately
+        UpdateLoop lateMember = new UpdateLoop(loop -> {}, 1L);
+        group.add(lateMember, 1, 0);
+        assertTrue(lateMember.awaitTermination(0L));
+    }
+
+    @Test
+    public void testFailingMemberTerminatesGroup() throws InterruptedException {
+        UpdateLoopGroup group = new UpdateLoopGroup(1_000_000L);
+        UpdateLoop healthyMember = new UpdateLoop(loop -> {}, 1L);
+        group.add(healthyMember, 1, 0);
+        group.add(new UpdateLoop(loop -> {
+            throw new RuntimeException("Intended failure");
+        }, 1L), 2, 1);
+
+        Thread masterThread = new Thread(group.getMasterLoop());
+        masterThread.setUncaughtExceptionHandler((thread, failure) -> {});
+        masterThread.start();
+
+        assertTrue(group.getMasterLoop().awaitTermination(1_000_000_000L));
+        assertTrue(healthyMember.awaitTermination(1_000_000_000L));
+    }
+
+    @Test
+    public void testTriggerDoesNotShiftPhases() {
+        VirtualClock clock = new VirtualClock();
+        UpdateLoopGroup group = new UpdateLoopGroup(1_000_000L);
+        group.getMasterLoop().setTimeSource(clock);
+
+        List<Long> fastTimes = new ArrayList<>();
+        List<Long> slowTimes = new ArrayList<>();
+        UpdateLoop fastLoop = new UpdateLoop(loop -> {
+            if (fastTimes.size() == 3) group.getMasterLoop().trigger();
+            if (fastTimes.size() == 10) group.stop();
+        }, 1L);
+        fastLoop.addTickListener((loop, scheduledTime, startTime, endTime, droppedBacklog) ->
+                fastTimes.add(scheduledTime)
+        );
+        group.add(fastLoop, 1, 0);
+        group.add(recordingLoop(slowTimes), 2, 0);
+        group.getMasterLoop().run();
+
+        // The extra master tick after the tick at 2ms must not update the members, nor shift their phases
+        List<Long> expectedFastTimes = new ArrayList<>();
+        for (long time = 0L; time <= 10_000_000L; time += 1_000_000L) expectedFastTimes.add(time);
+        assertEquals(expectedFastTimes, fastTimes);
+        assertEquals(Arrays.asList(0L, 2_000_000L, 4_000_000L, 6_000_000L, 8_000_000L, 10_000_000L), slowTimes);
+        assertEquals(11, group.getMasterLoop().getExecutedTicks());
+    }
+
+    @Test
+    public void testMemberPeriodFollowsMaster() {
+        VirtualClock clock = new VirtualClock();
+        UpdateLoopGroup group = new UpdateLoopGroup(1_000_000L);
+        group.getMasterLoop().setTimeSource(clock);
+
+        List<Long> memberPeriods = new ArrayList<>();
+        UpdateLoop member = new UpdateLoop(loop -> {
+            memberPeriods.add(loop.getPeriod());
+            if (memberPeriods.size() == 2) group.getMasterLoop().setPeriod(2_000_000L);
+            if (memberPeriods.size() == 4) group.stop();
+        }, 1L);
+        group.add(member, 3, 0);
+        assertEquals(3_000_000L, member.getPeriod());
+        group.getMasterLoop().run();
+
+        assertEquals(Arrays.asList(3_000_000L, 3_000_000L, 6_000_000L, 6_000_000L), memberPeriods);
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        UpdateLoopGroup group = new UpdateLoopGroup(1_000_000L);
+        assertThrows(IllegalArgumentException.class, () -> group.add(new UpdateLoop(loop -> {}, 1L), 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> group.add(new UpdateLoop(loop -> {}, 1L), 2, 2));
+
+        UpdateLoop member = new UpdateLoop(loop -> {}, 1L);
+        group.add(member, 1, 0);
+        assertThrows(IllegalStateException.class, () -> group.add(member, 1, 0));
+    }
+}
@@ -0,0 +1,182 @@
+package com.github.knokko.update;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.Math.abs;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestUpdateScheduler {
+
+    @Test
+    public void testManyLoops() throws InterruptedException {
+        UpdateScheduler scheduler = new UpdateScheduler(2);
+
+        long period = 10_000_000L;
+        AtomicInteger[] counters = new AtomicInteger[300];
+        UpdateLoop[] loops = new UpdateLoop[counters.length];
+
+        long startTime = System.nanoTime();
+        for (int index = 0; index < counters.length; index++) {
+            AtomicInteger counter = new AtomicInteger(0);
+            counters[index] = counter;
+            loops[index] = new UpdateLoop(loop -> counter.incrementAndGet(), period);
+            scheduler.schedule(loops[index]);
+        }
+
+        Thread.sleep(1000);
+        for (UpdateLoop loop : loops) loop.stop();
+        long passedTime = System.nanoTime() - startTime;
+        scheduler.shutdown();
+
+        long expectedValue = passedTime / period;
+        for (AtomicInteger counter : counters) {
+            long actualValue = counter.get();
+            if (abs(actualValue - expectedValue) > expectedValue / 5) assertEquals(expectedValue, actualValue);
+        }
+    }
+
+    @Test
+    public void testSetPeriodTakesEffectImmediately() throws InterruptedException {
+        UpdateScheduler scheduler = new UpdateScheduler(1);
+        AtomicInteger counter = new AtomicInteger(0);
+        UpdateLoop updater = new UpdateLoop(loop -> counter.incrementAndGet(), 100_000_000_000L);
+        scheduler.schedule(updater);
+
+        Thread.sleep(100);
+        assertEquals(1, counter.get());
+
+        // Without rescheduling, the next update would happen after 100 seconds
+        updater.setPeriod(1_000_000L);
+        Thread.sleep(500);
+        int value = counter.get();
+        if (abs(value - 500) > 100) assertEquals(500, value);
+
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testRescheduleManyLoops() throws InterruptedException {
+        UpdateScheduler scheduler = new UpdateScheduler(2);
+        AtomicInteger[] counters = new AtomicInteger[300];
+        UpdateLoop[] loops = new UpdateLoop[counters.length];
+        for (int index = 0; index < counters.length; index++) {
+            AtomicInteger counter = new AtomicInteger(0);
+            counters[index] = counter;
+            loops[index] = new UpdateLoop(loop -> counter.incrementAndGet(), 100_000_000_000L + index);
+            scheduler.schedule(loops[index]);
+        }
+
+        Thread.sleep(100);
+        assertEquals(counters.length, scheduler.getNumWaitingLoops());
+
+        // Change the period of every third loop, most of which are somewhere in the middle of the queue
+        for (int index = 0; index < loops.length; index += 3) loops[index].setPeriod(1_000_000L);
+        Thread.sleep(200);
+
+        for (int index = 0; index < counters.length; index++) {
+            int value = counters[index].get();
+            if (index % 3 == 0) assertTrue(value > 100, "Loop " + index + " has only " + value + " updates");
+            else assertEquals(1, value, "Loop " + index);
+        }
+
+        // Stopping should also reschedule the loops immediately
+        for (UpdateLoop loop : loops) loop.stop();
+        for (UpdateLoop loop : loops) assertTrue(loop.awaitTermination(1_000_000_000L));
+        assertEquals(0, scheduler.getNumWaitingLoops());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testStop() throws InterruptedException {
+        UpdateScheduler scheduler = new UpdateScheduler(1);
+        AtomicInteger counter = new AtomicInteger(0);
+        UpdateLoop updater = new UpdateLoop(loop -> counter.incrementAndGet(), 1_000_000L);
+        scheduler.schedule(updater);
+
+        Thread.sleep(100);
+        updater.stop();
+        Thread.sleep(10);
+        int stoppedValue = counter.get();
+        assertEquals(0, scheduler.getNumWaitingLoops());
+
+        Thread.sleep(100);
+        assertEquals(stoppedValue, counter.get());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testStopDuringStep() throws InterruptedException {
+        UpdateScheduler scheduler = new UpdateScheduler(2);
+        for (int counter = 0; counter < 500; counter++) {
+            AtomicBoolean didUpdate = new AtomicBoolean(false);
+            long stopDelay = (counter % 50) * 100L;
+            UpdateLoop updater = new UpdateLoop(loop -> didUpdate.set(true), 100_000_000_000L);
+            Thread stopper = new Thread(() -> {
+                // Spin rather than block, so that stop() is called while the worker is finishing the step
+                while (!didUpdate.get()) SpinWait.onSpinWait();
+                long stopTime = System.nanoTime() + stopDelay;
+                while (System.nanoTime() < stopTime) SpinWait.onSpinWait();
+                updater.stop();
+            });
+            stopper.start();
+            scheduler.schedule(updater);
+
+            // The update loop should not wait until its next update, which would take 100 seconds
+            assertTrue(updater.awaitTermination(1_000_000_000L), "Iteration " + counter);
+            stopper.join();
+        }
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testFailingUpdateFunction() throws InterruptedException {
+        UpdateScheduler scheduler = new UpdateScheduler(1);
+        AtomicInteger counter = new AtomicInteger(0);
+        UpdateLoop failingLoop = new UpdateLoop(loop -> {
+            throw new UnsupportedOperationException("This exception is expected");
+        }, 1_000_000L);
+        UpdateLoop updater = new UpdateLoop(loop -> counter.incrementAndGet(), 1_000_000L);
+
+        scheduler.schedule(failingLoop);
+        Thread.sleep(50);
+        scheduler.schedule(updater);
+        Thread.sleep(100);
+        updater.stop();
+
+        assertTrue(counter.get() > 50);
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testCannotStartTwice() {
+        UpdateScheduler scheduler = new UpdateScheduler(1);
+        UpdateLoop updater = new UpdateLoop(loop -> {}, 100_000_000L);
+        scheduler.schedule(updater);
+
+        assertThrows(IllegalStateException.class, () -> scheduler.schedule(updater));
+        assertThrows(IllegalStateException.class, updater::run);
+
+        updater.stop();
+        scheduler.shutdown();
+        assertThrows(IllegalStateException.class, () -> scheduler.schedule(new UpdateLoop(loop -> {}, 1000L)));
+    }
+
+    @Test
+    public void testScheduleAfterShutdown() throws InterruptedException {
+        UpdateScheduler scheduler = new UpdateScheduler(1);
+        scheduler.shutdown();
+
+        // The rejected update loop should not be marked as started, so it can still be run in another way
+        AtomicInteger counter = new AtomicInteger(0);
+        UpdateLoop updater = new UpdateLoop(loop -> {
+            if (counter.incrementAndGet() == 3) loop.stop();
+        }, 1_000_000L);
+        assertThrows(IllegalStateException.class, () -> scheduler.schedule(updater));
+        updater.start();
+        assertTrue(updater.awaitTermination(1_000_000_000L));
+        assertEquals(3, counter.get());
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.knokko.update;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestVirtualClock {
+
+    @Test
+    public void testConstantPeriod() {
+        VirtualClock clock = new VirtualClock();
+        AtomicLong counter = new AtomicLong(0);
+
+        // Simulate 100 seconds with a period of 1 millisecond
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            counter.incrementAndGet();
+            if (clock.nanoTime() >= 100_000_000_000L) loop.stop();
+        }, 1_000_000L);
+        updateLoop.setTimeSource(clock);
+        assertSame(clock, updateLoop.getWaitStrategy());
+        assertSame(clock, updateLoop.getTimeSource());
+        updateLoop.run();
+
+        assertEquals(100_001, counter.get());
+        assertEquals(100_000_000_000L, clock.nanoTime());
+    }
+
+    @Test
+    public void testWithDynamicPeriod() {
+        VirtualClock clock = new VirtualClock(12345);
+        AtomicLong counter = new AtomicLong(0);
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            long value = counter.incrementAndGet();
+            if (value == 500) loop.setPeriod(100_000_000L);
+            if (value == 505) loop.stop();
+        }, 1_000_000L);
+        updateLoop.setTimeSource(clock);
+        updateLoop.run();
+
+        // Update 1 happens at time 0, and update 500 at time 499ms. Since setPeriod restarts the schedule, and update
+        // 500 counts as the first update of the new schedule, update 501 happens at time 599ms, after which the
+        // updates happen every 100ms.
+        assertEquals(12345 + 499_000_000L + 5 * 100_000_000L, clock.nanoTime());
+    }
+
+    @Test
+    public void testMaximumBacklog() {
+        VirtualClock clock = new VirtualClock();
+        AtomicLong counter = new AtomicLong(0);
+        TickMetrics metrics = new TickMetrics();
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            long value = counter.incrementAndGet();
+
+            // Simulate an update that takes 50ms
+            if (value == 10) clock.advance(50_000_000L);
+            if (value == 100) loop.stop();
+        }, 1_000_000L, 20_000_000L);
+        updateLoop.setTimeSource(clock);
+        updateLoop.addTickListener(metrics);
+        updateLoop.run();
+
+        assertEquals(100, metrics.getTickCount());
+        assertEquals(50_000_000L, metrics.getMaxDuration());
+        // Update 10 is scheduled at 9ms, and ends at 59ms. Update 11 was scheduled at 10ms, so it is 49ms late
+        assertEquals(29_000_000L, metrics.getTotalDroppedBacklog());
+        assertEquals(20_000_000L, metrics.getMaxLateness());
+    }
+
+    @Test
+    public void testUpdateCounter() {
+        VirtualClock clock = new VirtualClock();
+        UpdateCounter counter = new UpdateCounter(1_000_000_000L, clock);
+        SlidingUpdateCounter slidingCounter = new SlidingUpdateCounter(1_000_000_000L, 10, clock);
+        AtomicLong firstValue = new AtomicLong(-1);
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            counter.increment();
+            slidingCounter.increment();
+            if (firstValue.get() == -1) firstValue.set(counter.getValue());
+            if (clock.nanoTime() >= 10_000_000_000L) loop.stop();
+        }, 16_666_667L);
+        updateLoop.setTimeSource(clock);
+        updateLoop.run();
+
+        // The clock starts at 0, so the first period must start at the first increment (at time 0)
+        assertEquals(60, firstValue.get());
+        assertEquals(60, counter.getValue());
+        assertEquals(60, slidingCounter.getValue());
+    }
+
+    @Test
+    public void testTimeSourceCanNotChangeAfterStart() {
+        UpdateLoop updateLoop = new UpdateLoop(loop -> loop.stop(), 1000L);
+        updateLoop.run();
+        assertThrows(IllegalStateException.class, () -> updateLoop.setTimeSource(new VirtualClock()));
+        assertThrows(IllegalArgumentException.class, () -> new VirtualClock().advance(-1));
+
+        UpdateLoop virtualLoop = new UpdateLoop(loop -> {}, 1000L);
+        virtualLoop.setTimeSource(new VirtualClock());
+        UpdateScheduler scheduler = new UpdateScheduler(1);
+        assertThrows(IllegalArgumentException.class, () -> scheduler.schedule(virtualLoop));
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testWaitStrategyMustBeVirtualClock() {
+        VirtualClock clock = new VirtualClock();
+        AtomicLong counter = new AtomicLong(0);
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            if (counter.incrementAndGet() == 10) loop.stop();
+        }, 1_000_000L);
+        updateLoop.setTimeSource(clock);
+
+        // Any other wait strategy would wait forever, since the virtual clock wouldn't advance
+        assertThrows(IllegalStateException.class, () -> updateLoop.setWaitStrategy(WaitStrategy.PARK));
+        assertThrows(IllegalStateException.class, () -> updateLoop.setWaitStrategy(new VirtualClock()));
+        updateLoop.setWaitStrategy(clock);
+        assertSame(clock, updateLoop.getWaitStrategy());
+
+        updateLoop.run();
+        assertEquals(10, counter.get());
+        assertEquals(9_000_000L, clock.nanoTime());
+    }
+}
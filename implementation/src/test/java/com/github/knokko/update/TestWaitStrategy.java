@@ -0,0 +1,77 @@
+package com.github.knokko.update;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.Math.abs;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestWaitStrategy {
+
+    private void testConstantPeriod(WaitStrategy strategy, long period, long sleepTime) throws InterruptedException {
+        AtomicInteger counter = new AtomicInteger(0);
+
+        long startTime = System.nanoTime();
+        UpdateLoop updater = new UpdateLoop(loop -> counter.incrementAndGet(), period);
+        updater.setWaitStrategy(strategy);
+        updater.start();
+
+        Thread.sleep(sleepTime);
+        updater.stop();
+        long passedTime = System.nanoTime() - startTime;
+
+        long expectedValue = passedTime / period;
+        long actualValue = counter.get();
+
+        if (abs(actualValue - expectedValue) > expectedValue / 5) assertEquals(expectedValue, actualValue);
+    }
+
+    @Test
+    public void testPark() throws InterruptedException {
+        testConstantPeriod(WaitStrategy.PARK, 1_000_000L, 500);
+    }
+
+    @Test
+    public void testSpin() throws InterruptedException {
+        testConstantPeriod(WaitStrategy.SPIN, 100_000L, 500);
+    }
+
+    @Test
+    public void testSleepThenSpin() throws InterruptedException {
+        testConstantPeriod(WaitStrategy.sleepThenSpin(2_000_000L), 16_666_667L, 500);
+        testConstantPeriod(WaitStrategy.sleepThenSpin(2_000_000L), 1_000_000L, 500);
+    }
+
+    @Test
+    public void testCalibrated() throws InterruptedException {
+        testConstantPeriod(new CalibratedWaitStrategy(), 16_666_667L, 500);
+        testConstantPeriod(new CalibratedWaitStrategy(), 250_000L, 500);
+    }
+
+    @Test
+    public void testCalibratedDoesNotWakeUpEarly() throws InterruptedException {
+        CalibratedWaitStrategy strategy = new CalibratedWaitStrategy(1000L, 5_000_000L);
+        for (int counter = 0; counter < 20; counter++) {
+            long startTime = System.nanoTime();
+            strategy.waitFor(2_000_000L);
+            assertTrue(System.nanoTime() - startTime >= 2_000_000L);
+
+            long margin = strategy.getMargin();
+            assertTrue(margin >= 1000L && margin <= 5_000_000L);
+        }
+    }
+
+    @Test
+    public void testSleepIsAliasOfPark() {
+        assertSame(WaitStrategy.PARK, WaitStrategy.SLEEP);
+        assertSame(WaitStrategy.SLEEP, new UpdateLoop(loop -> {}, 1L).getWaitStrategy());
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> WaitStrategy.sleepThenSpin(-1));
+        assertThrows(IllegalArgumentException.class, () -> new CalibratedWaitStrategy(5, 4));
+        assertThrows(IllegalArgumentException.class, () -> new UpdateLoop(loop -> {}, 1000L).setWaitStrategy(null));
+    }
+}
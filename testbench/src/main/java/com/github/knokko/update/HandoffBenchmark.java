@@ -0,0 +1,105 @@
+package com.github.knokko.update;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the throughput of an update thread and a render thread that share a game state, using either
+ * <b>synchronized</b> blocks (like the examples in <i>splitting-update-from-render.md</i>) or a <i>TripleBuffer</i>.
+ * Both threads run as fast as they can, and the number of updates and frames per second are printed, as well as the
+ * longest frame time. Note that the triple buffer needs to copy the state after every update, but it ensures that the
+ * render thread never needs to wait for the update thread (and vice versa).
+ */
+public class HandoffBenchmark {
+
+    private static final int STATE_SIZE = 100_000;
+    private static final long DURATION = 3_000_000_000L;
+
+    public static void main(String[] args) throws InterruptedException {
+        // Run both twice, so that the second round is measured after the JIT warmed up
+        for (int round = 0; round < 2; round++) {
+            benchmarkSynchronized();
+            benchmarkTripleBuffer();
+        }
+    }
+
+    private static void update(double[] state) {
+        for (int index = 0; index < state.length; index++) state[index] = state[index] * 0.99 + index;
+    }
+
+    private static double render(double[] state) {
+        double result = 0.0;
+        for (double value : state) result += value;
+        return result;
+    }
+
+    private static void benchmarkSynchronized() throws InterruptedException {
+        double[] gameState = new double[STATE_SIZE];
+        AtomicLong blackHole = new AtomicLong();
+
+        Thread updateThread = new Thread(() -> {
+            long endTime = System.nanoTime() + DURATION;
+            long updates = 0;
+            while (System.nanoTime() < endTime) {
+                synchronized (gameState) {
+                    update(gameState);
+                }
+                updates += 1;
+            }
+            System.out.printf("synchronized: %d updates per second%n", updates * 1000_000_000L / DURATION);
+        });
+        updateThread.start();
+
+        long endTime = System.nanoTime() + DURATION;
+        long frames = 0;
+        long maxFrameTime = 0;
+        long currentTime = System.nanoTime();
+        while (currentTime < endTime) {
+            synchronized (gameState) {
+                blackHole.addAndGet((long) render(gameState));
+            }
+            frames += 1;
+
+            long previousTime = currentTime;
+            currentTime = System.nanoTime();
+            maxFrameTime = Math.max(maxFrameTime, currentTime - previousTime);
+        }
+        updateThread.join();
+        System.out.printf("synchronized: %d frames per second%n", frames * 1000_000_000L / DURATION);
+        System.out.printf("synchronized: max frame time is %d microseconds%n", maxFrameTime / 1000);
+    }
+
+    private static void benchmarkTripleBuffer() throws InterruptedException {
+        TripleBuffer<double[]> buffer = new TripleBuffer<>(() -> new double[STATE_SIZE]);
+        AtomicLong blackHole = new AtomicLong();
+
+        Thread updateThread = new Thread(() -> {
+            double[] gameState = new double[STATE_SIZE];
+            long endTime = System.nanoTime() + DURATION;
+            long updates = 0;
+            while (System.nanoTime() < endTime) {
+                update(gameState);
+                System.arraycopy(gameState, 0, buffer.getWriteBuffer(), 0, STATE_SIZE);
+                buffer.publish();
+                updates += 1;
+            }
+            System.out.printf("triple buffer: %d updates per second%n", updates * 1000_000_000L / DURATION);
+        });
+        updateThread.start();
+
+        long endTime = System.nanoTime() + DURATION;
+        long frames = 0;
+        long maxFrameTime = 0;
+        long currentTime = System.nanoTime();
+        while (currentTime < endTime) {
+            blackHole.addAndGet((long) render(buffer.getReadBuffer()));
+            frames += 1;
+
+            long previousTime = currentTime;
+            currentTime = System.nanoTime();
+            maxFrameTime = Math.max(maxFrameTime, currentTime - previousTime);
+        }
+        updateThread.join();
+        System.out.printf("triple buffer: %d frames per second%n", frames * 1000_000_000L / DURATION);
+        System.out.printf("triple buffer: max frame time is %d microseconds%n", maxFrameTime / 1000);
+    }
+}
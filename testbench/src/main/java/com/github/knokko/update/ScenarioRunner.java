@@ -0,0 +1,258 @@
+package com.github.knokko.update;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * A headless alternative to the <i>UpdateMonitor</i>: it drives an <i>UpdateLoop</i> through scripted load
+ * profiles, and reports the achieved update rate, the jitter (lateness) percentiles, and the dropped backlog as CSV
+ * or JSON. This makes it possible to compare wait strategies and JVM settings on machines without a display.
+ * Usage (all options are optional):
+ * <pre>
+ * ScenarioRunner --scenario all|steady|spiky|overload|period-change
+ *                --wait all|park|spin|sleep-then-spin|calibrated
+ *                --duration seconds --format csv|json --output file
+ * </pre>
+ * The default wait strategy (<b>WaitStrategy.SLEEP</b>) is an alias of {@code park}, so it isn't listed separately.
+ * Progress messages are printed to standard error, so the report can be redirected when no output file is given.
+ */
+public class ScenarioRunner {
+
+    private enum Scenario {
+        /**
+         * Each tick takes 3ms, and the period is 10ms
+         */
+        STEADY(3_000_000L, 0L, 0, 10_000_000L),
+        /**
+         * Like STEADY, but 2% of the ticks have a spike of 100ms, like the spikes of the <i>UpdateMonitor</i>
+         */
+        SPIKY(3_000_000L, 100_000_000L, 2, 10_000_000L),
+        /**
+         * Each tick takes 12ms, but the period is only 10ms, so the backlog will grow until it is discarded
+         */
+        OVERLOAD(12_000_000L, 0L, 0, 10_000_000L),
+        /**
+         * Each tick takes 2ms, and the period changes from 10ms to 5ms to 20ms
+         */
+        PERIOD_CHANGE(2_000_000L, 0L, 0, 10_000_000L, 5_000_000L, 20_000_000L);
+
+        final long executionTime;
+        final long spikeTime;
+        final int spikePercentage;
+        final long[] periods;
+
+        Scenario(long executionTime, long spikeTime, int spikePercentage, long... periods) {
+            this.executionTime = executionTime;
+            this.spikeTime = spikeTime;
+            this.spikePercentage = spikePercentage;
+            this.periods = periods;
+        }
+
+        String getName() {
+            return name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+    }
+
+    private static final String[] WAIT_STRATEGIES = { "park", "spin", "sleep-then-spin", "calibrated" };
+    private static final double[] PERCENTILES = { 50.0, 90.0, 99.0, 99.9 };
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String scenarioName = "all";
+        String waitName = "all";
+        long duration = 10_000_000_000L;
+        String format = "csv";
+        String outputFile = null;
+
+        for (int index = 0; index < args.length; index += 2) {
+            if (index + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + args[index]);
+            String value = args[index + 1];
+            switch (args[index]) {
+                case "--scenario": scenarioName = value; break;
+                case "--wait": waitName = value; break;
+                case "--duration": duration = (long) (Double.parseDouble(value) * 1_000_000_000L); break;
+                case "--format": format = value; break;
+                case "--output": outputFile = value; break;
+                default: throw new IllegalArgumentException("Unknown option " + args[index]);
+            }
+        }
+        if (!format.equals("csv") && !format.equals("json")) {
+            throw new IllegalArgumentException("Unknown format " + format);
+        }
+
+        List<Scenario> scenarios = new ArrayList<>();
+        for (Scenario scenario : Scenario.values()) {
+            if (scenarioName.equals("all") || scenarioName.equals(scenario.getName())) scenarios.add(scenario);
+        }
+        if (scenarios.isEmpty()) throw new IllegalArgumentException("Unknown scenario " + scenarioName);
+
+        List<String> waitStrategies = new ArrayList<>();
+        for (String name : WAIT_STRATEGIES) {
+            if (waitName.equals("all") || waitName.equals(name)) waitStrategies.add(name);
+        }
+        if (waitStrategies.isEmpty()) throw new IllegalArgumentException("Unknown wait strategy " + waitName);
+
+        List<Result> results = new ArrayList<>();
+        for (Scenario scenario : scenarios) {
+            for (String waitStrategy : waitStrategies) {
+                System.err.printf("Running scenario %s with wait strategy %s...%n", scenario.getName(), waitStrategy);
+                results.add(run(scenario, waitStrategy, duration));
+            }
+        }
+
+        String report = format.equals("csv") ? toCsv(results) : toJson(results);
+        if (outputFile != null) {
+            Files.write(Paths.get(outputFile), report.getBytes(StandardCharsets.UTF_8));
+            System.err.println("Wrote report to " + outputFile);
+        } else System.out.print(report);
+    }
+
+    private static WaitStrategy createWaitStrategy(String name) {
+        switch (name) {
+            case "park": return WaitStrategy.PARK;
+            case "spin": return WaitStrategy.SPIN;
+            case "sleep-then-spin": return WaitStrategy.sleepThenSpin(2_000_000L);
+            case "calibrated": return new CalibratedWaitStrategy();
+            default: throw new IllegalArgumentException("Unknown wait strategy " + name);
+        }
+    }
+
+    private static void busyWait(long duration) {
+        long startTime = System.nanoTime();
+        //noinspection StatementWithEmptyBody
+        while (System.nanoTime() - startTime < duration);
+    }
+
+    private static Result run(Scenario scenario, String waitStrategy, long duration) throws InterruptedException {
+        // Use a fixed seed, so that each run gets the same spikes
+        Random rng = new Random(1234);
+        UpdateLoop updateLoop = new UpdateLoop(loop -> {
+            long executionTime = scenario.executionTime;
+            if (rng.nextInt(100) < scenario.spikePercentage) executionTime += scenario.spikeTime;
+            busyWait(executionTime);
+        }, scenario.periods[0]);
+        updateLoop.setWaitStrategy(createWaitStrategy(waitStrategy));
+
+        TickMetrics metrics = new TickMetrics();
+        TickHistograms histograms = new TickHistograms();
+        updateLoop.addTickListener(metrics);
+        updateLoop.addTickListener(histograms);
+
+        Thread updateThread = new Thread(updateLoop, "ScenarioRunner-" + scenario.getName());
+        long startTime = System.nanoTime();
+        updateThread.start();
+
+        long phaseDuration = duration / scenario.periods.length;
+        double expectedTicks = 0.0;
+        for (int phase = 0; phase < scenario.periods.length; phase++) {
+            if (phase > 0) updateLoop.setPeriod(scenario.periods[phase]);
+            long phaseEnd = startTime + (phase + 1) * phaseDuration;
+            long remaining;
+            while ((remaining = phaseEnd - System.nanoTime()) > 0L) {
+                Thread.sleep(remaining / 1_000_000L, (int) (remaining % 1_000_000L));
+            }
+            expectedTicks += phaseDuration / (double) scenario.periods[phase];
+        }
+
+        updateLoop.stop();
+        updateThread.join();
+        long elapsedTime = System.nanoTime() - startTime;
+
+        return new Result(
+                scenario.getName(), waitStrategy, elapsedTime, expectedTicks, metrics.getTickCount(),
+                metrics.getOverrunCount(), metrics.getTotalDroppedBacklog(), histograms.getLateness().snapshot(),
+                histograms.getDuration().snapshot()
+        );
+    }
+
+    private static class Result {
+
+        final String scenario, waitStrategy;
+        final long elapsedTime;
+        final double expectedTicks;
+        final long ticks, overruns, droppedBacklog;
+        final LatencyHistogram.Snapshot lateness, duration;
+
+        Result(
+                String scenario, String waitStrategy, long elapsedTime, double expectedTicks, long ticks,
+                long overruns, long droppedBacklog, LatencyHistogram.Snapshot lateness,
+                LatencyHistogram.Snapshot duration
+        ) {
+            this.scenario = scenario;
+            this.waitStrategy = waitStrategy;
+            this.elapsedTime = elapsedTime;
+            this.expectedTicks = expectedTicks;
+            this.ticks = ticks;
+            this.overruns = overruns;
+            this.droppedBacklog = droppedBacklog;
+            this.lateness = lateness;
+            this.duration = duration;
+        }
+
+        /**
+         * @return The names and values of all columns of this result
+         */
+        List<String[]> columns() {
+            double seconds = elapsedTime / 1e9;
+            List<String[]> columns = new ArrayList<>();
+            columns.add(new String[] { "scenario", scenario });
+            columns.add(new String[] { "waitStrategy", waitStrategy });
+            columns.add(new String[] { "durationSeconds", format(seconds) });
+            columns.add(new String[] { "ticks", Long.toString(ticks) });
+            columns.add(new String[] { "ticksPerSecond", format(ticks / seconds) });
+            columns.add(new String[] { "targetTicksPerSecond", format(expectedTicks / seconds) });
+            columns.add(new String[] { "overruns", Long.toString(overruns) });
+            columns.add(new String[] { "droppedBacklogMillis", format(droppedBacklog / 1e6) });
+            for (double percentile : PERCENTILES) {
+                String name = "latenessP" + format(percentile).replace(".0", "").replace('.', '_') + "Micros";
+                columns.add(new String[] { name, format(lateness.getValueAtPercentile(percentile) / 1e3) });
+            }
+            columns.add(new String[] { "latenessMaxMicros", format(lateness.getMax() / 1e3) });
+            columns.add(new String[] { "latenessMeanMicros", format(lateness.getMean() / 1e3) });
+            columns.add(new String[] { "executionMeanMicros", format(duration.getMean() / 1e3) });
+            return columns;
+        }
+
+        private static String format(double value) {
+            return String.format(Locale.ROOT, "%.1f", value);
+        }
+    }
+
+    private static String toCsv(List<Result> results) {
+        StringBuilder csv = new StringBuilder();
+        for (Result result : results) {
+            List<String[]> columns = result.columns();
+            if (csv.length() == 0) {
+                String[] names = columns.stream().map(column -> column[0]).toArray(String[]::new);
+                csv.append(String.join(",", names)).append('\n');
+            }
+            String[] values = columns.stream().map(column -> column[1]).toArray(String[]::new);
+            csv.append(String.join(",", values)).append('\n');
+        }
+        return csv.toString();
+    }
+
+    private static String toJson(List<Result> results) {
+        StringBuilder json = new StringBuilder("[\n");
+        for (int index = 0; index < results.size(); index++) {
+            json.append("  {");
+            List<String[]> columns = results.get(index).columns();
+            for (int columnIndex = 0; columnIndex < columns.size(); columnIndex++) {
+                String[] column = columns.get(columnIndex);
+                if (columnIndex > 0) json.append(", ");
+                json.append('"').append(column[0]).append("\": ");
+
+                // The first 2 columns are strings, the others are numbers
+                if (columnIndex < 2) json.append('"').append(column[1]).append('"');
+                else json.append(column[1]);
+            }
+            json.append(index == results.size() - 1 ? "}\n" : "},\n");
+        }
+        return json.append("]\n").toString();
+    }
+}